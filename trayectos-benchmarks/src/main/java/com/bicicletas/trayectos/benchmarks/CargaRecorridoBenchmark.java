@@ -0,0 +1,106 @@
+package com.bicicletas.trayectos.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.bicicletas.trayectos.TrayectosApplication;
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.logica.TrayectosService;
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.bicicletas.trayectos.modelo.Ubicacion;
+
+// Carga de las ubicaciones de un trayecto largo desde H2 en memoria y cálculo
+// de su distancia: como entidades Ubicacion (una por punto) o como Recorrido
+// (arreglos de tipos primitivos leídos por JDBC)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CargaRecorridoBenchmark {
+
+    @Param({"1000", "10000"})
+    int puntos;
+
+    ConfigurableApplicationContext aplicacion;
+
+    TrayectosService servicio;
+
+    TrayectosRepository trayectos;
+
+    UUID trayectoId;
+
+    @Setup(Level.Trial)
+    public void prepararTrayecto() throws Exception {
+        // como argumentos para que tengan prioridad sobre application.properties
+        aplicacion = new SpringApplicationBuilder(TrayectosApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--spring.datasource.url=jdbc:h2:mem:recorrido",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        servicio = aplicacion.getBean(TrayectosService.class);
+        trayectos = aplicacion.getBean(TrayectosRepository.class);
+
+        // el trayecto se registra en lotes de 1.000 ubicaciones
+        List<Ubicacion> ubicaciones = DatosPrueba.trayectoFinalizado(puntos).getUbicaciones();
+        trayectoId = servicio.iniciarTrayecto("bici-recorrido", DatosPrueba.LONGITUD_INICIAL, DatosPrueba.LATITUD_INICIAL);
+
+        // el trayecto se inició ahora y no acepta ubicaciones anteriores a su inicio,
+        // así que se lleva a la fecha y hora de la primera ubicación de los datos de prueba
+        LocalDateTime inicio = ubicaciones.get(0).getFechaHora();
+        JdbcTemplate jdbc = aplicacion.getBean(JdbcTemplate.class);
+        jdbc.update("update trayecto set fecha_hora_inicio = ?, ultima_fecha_hora = ? where id = ?", inicio, inicio, trayectoId);
+        jdbc.update("update ubicacion set fecha_hora = ? where trayecto_id = ?", inicio, trayectoId);
+
+        for (int i = 1; i < ubicaciones.size(); i += 1000) {
+            List<Ubicacion> lote = new ArrayList<>();
+            for (Ubicacion ubicacion : ubicaciones.subList(i, Math.min(i + 1000, ubicaciones.size()))) {
+                lote.add(DatosPrueba.ubicacion(ubicacion.getFechaHora(), ubicacion.getLongitud(), ubicacion.getLatitud()));
+            }
+            servicio.registrarUbicaciones(trayectoId, lote);
+        }
+        servicio.finalizarTrayecto(trayectoId, DatosPrueba.LONGITUD_INICIAL, DatosPrueba.LATITUD_INICIAL);
+    }
+
+    @TearDown(Level.Trial)
+    public void detenerAplicacion() {
+        aplicacion.close();
+    }
+
+    // como CU004: el trayecto con todas sus entidades Ubicacion
+    @Benchmark
+    public double entidades() {
+        Trayecto trayecto = trayectos.findConUbicacionesById(trayectoId).get();
+        return trayecto.calcularDistanciaTotal();
+    }
+
+    @Benchmark
+    public double recorrido() throws Exception {
+        return servicio.consultarRecorrido(trayectoId).calcularDistanciaTotal();
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.bicicletas.trayectos.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.bicicletas.trayectos.modelo.Ubicacion;
+
+// Genera trayectos sintéticos para los benchmarks: un recorrido aleatorio desde
+// Bogotá con una ubicación cada cinco segundos, como las que envían las bicicletas
+final class DatosPrueba {
+
+    static final double LATITUD_INICIAL = 4.6097;
+    static final double LONGITUD_INICIAL = -74.0817;
+
+    private DatosPrueba() {
+    }
+
+    // trayecto finalizado con `puntos` ubicaciones y sus estadísticas acumuladas
+    static Trayecto trayectoFinalizado(int puntos) {
+        Random aleatorio = new Random(42);
+        LocalDateTime fechaHora = LocalDateTime.of(2025, 1, 1, 8, 0);
+        double latitud = LATITUD_INICIAL;
+        double longitud = LONGITUD_INICIAL;
+
+        Trayecto trayecto = new Trayecto();
+        trayecto.setFechaHoraInicio(fechaHora);
+        trayecto.setPropietario("bici-benchmark");
+
+        for (int i = 0; i < puntos; i++) {
+            Ubicacion ubicacion = ubicacion(fechaHora, longitud, latitud);
+            ubicacion.setTrayecto(trayecto);
+            trayecto.getUbicaciones().add(ubicacion);
+            trayecto.acumularUbicacion(ubicacion);
+
+            // entre 0 y ~50 metros en cada eje cada cinco segundos
+            fechaHora = fechaHora.plusSeconds(5);
+            latitud += (aleatorio.nextDouble() - 0.5) * 0.0009;
+            longitud += (aleatorio.nextDouble() - 0.5) * 0.0009;
+        }
+
+        trayecto.setFechaHoraFin(trayecto.getUltimaFechaHora());
+        trayecto.setDuracion(5L * (puntos - 1));
+        trayecto.setEnProceso(false);
+        return trayecto;
+    }
+
+    static Ubicacion ubicacion(LocalDateTime fechaHora, double longitud, double latitud) {
+        Ubicacion ubicacion = new Ubicacion();
+        ubicacion.setFechaHora(fechaHora);
+        ubicacion.setLongitud(longitud);
+        ubicacion.setLatitud(latitud);
+        return ubicacion;
+    }
+
+}
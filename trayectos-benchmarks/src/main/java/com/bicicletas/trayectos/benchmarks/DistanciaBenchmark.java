@@ -0,0 +1,94 @@
+package com.bicicletas.trayectos.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bicicletas.trayectos.modelo.CalculadoraDistancias;
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.bicicletas.trayectos.modelo.Ubicacion;
+
+// Cálculo de distancias (Haversine) sobre trayectos de distintos tamaños
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanciaBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int puntos;
+
+    Trayecto trayecto;
+
+    double[] latitudes;
+
+    double[] longitudes;
+
+    @Setup
+    public void preparar() {
+        trayecto = DatosPrueba.trayectoFinalizado(puntos);
+
+        List<Ubicacion> ubicaciones = trayecto.getUbicaciones();
+        latitudes = new double[puntos];
+        longitudes = new double[puntos];
+        for (int i = 0; i < puntos; i++) {
+            latitudes[i] = ubicaciones.get(i).getLatitud();
+            longitudes[i] = ubicaciones.get(i).getLongitud();
+        }
+    }
+
+    // recorre la lista de ubicaciones (valores Double) como en CU004 y CU005
+    @Benchmark
+    public double calcularDistanciaTotal() {
+        return trayecto.calcularDistanciaTotal();
+    }
+
+    // la misma fórmula sobre arreglos de double: aísla el costo de Haversine
+    @Benchmark
+    public double haversineSobreArreglos() {
+        double distancia = 0;
+        for (int i = 1; i < puntos; i++) {
+            distancia += Trayecto.calcularDistancia(
+                latitudes[i - 1], longitudes[i - 1],
+                latitudes[i], longitudes[i]
+            );
+        }
+        return distancia;
+    }
+
+    // Haversine con un coseno y una conversión a radianes por ubicación (no por par)
+    @Benchmark
+    public double calculadoraHaversine() {
+        return CalculadoraDistancias.haversine(latitudes, longitudes, puntos);
+    }
+
+    // aproximación plana de cada tramo corto, sin seno ni arcoseno
+    @Benchmark
+    public double calculadoraEquirectangular() {
+        return CalculadoraDistancias.equirectangular(latitudes, longitudes, puntos);
+    }
+
+    // acumula la distancia ubicación por ubicación, como lo hace CU002
+    @Benchmark
+    public double acumularUbicaciones() {
+        Trayecto acumulado = new Trayecto();
+        for (Ubicacion ubicacion : trayecto.getUbicaciones()) {
+            acumulado.acumularUbicacion(ubicacion);
+        }
+        return acumulado.getDistanciaTotal();
+    }
+
+}
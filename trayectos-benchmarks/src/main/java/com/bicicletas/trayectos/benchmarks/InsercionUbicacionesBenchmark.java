@@ -0,0 +1,147 @@
+package com.bicicletas.trayectos.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bicicletas.trayectos.modelo.GeneradorUuidV7;
+
+// Inserción de ubicaciones con ids aleatorios (UUID v4) y ordenados por tiempo
+// (UUID v7). Cada invocación inserta un bloque de `filas` ubicaciones en lotes
+// JDBC sobre la misma tabla, que crece durante la prueba (con los valores por
+// defecto llega a 3 millones de filas), así que el tiempo por bloque muestra cómo
+// se degrada la inserción a medida que el índice de la llave primaria crece.
+//
+// Por defecto usa H2 en un archivo temporal con poca caché; con -p url=... se
+// puede correr contra MySQL, por ejemplo el de docker-compose:
+//   java -jar benchmarks.jar InsercionUbicaciones -p url=jdbc:mysql://localhost:3306/bicicletas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InsercionUbicacionesBenchmark {
+
+    static final int TAMANO_LOTE = 1000;
+
+    @Param({"aleatorio", "v7"})
+    String tipoId;
+
+    @Param("500000")
+    int filas;
+
+    // vacío: H2 en un archivo temporal
+    @Param("")
+    String url;
+
+    @Param("bicicletas")
+    String usuario;
+
+    @Param("secret")
+    String clave;
+
+    Path directorio;
+
+    Connection conexion;
+
+    LocalDateTime fechaHora = LocalDateTime.now();
+
+    @Setup(Level.Trial)
+    public void crearTabla() throws Exception {
+        String urlConexion = url;
+        if (urlConexion.isEmpty()) {
+            directorio = Files.createTempDirectory("insercion");
+            urlConexion = "jdbc:h2:file:" + directorio.resolve("bicicletas") + ";CACHE_SIZE=8192";
+        }
+        conexion = DriverManager.getConnection(urlConexion, usuario, clave);
+        conexion.setAutoCommit(false);
+
+        try (Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("drop table if exists ubicacion_insercion");
+            sentencia.execute("create table ubicacion_insercion (id binary(16) not null, fecha_hora timestamp(6), "
+                + "longitud double precision, latitud double precision, trayecto_id binary(16), primary key (id))");
+        }
+        conexion.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void borrarTabla() throws Exception {
+        try (Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("drop table ubicacion_insercion");
+        }
+        conexion.commit();
+        conexion.close();
+
+        if (directorio != null) {
+            try (var archivos = Files.list(directorio)) {
+                for (Path archivo : archivos.toList()) {
+                    Files.delete(archivo);
+                }
+            }
+            Files.delete(directorio);
+        }
+    }
+
+    @Benchmark
+    public int insertarBloque() throws SQLException {
+        byte[] trayectoId = bytes(nuevoId());
+
+        try (PreparedStatement insercion = conexion.prepareStatement(
+                "insert into ubicacion_insercion (id, fecha_hora, longitud, latitud, trayecto_id) values (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= filas; i++) {
+                fechaHora = fechaHora.plusNanos(1000);
+                insercion.setBytes(1, bytes(nuevoId()));
+                insercion.setTimestamp(2, Timestamp.valueOf(fechaHora));
+                insercion.setDouble(3, DatosPrueba.LONGITUD_INICIAL);
+                insercion.setDouble(4, DatosPrueba.LATITUD_INICIAL);
+                insercion.setBytes(5, trayectoId);
+                insercion.addBatch();
+
+                if (i % TAMANO_LOTE == 0) {
+                    insercion.executeBatch();
+                    conexion.commit();
+                }
+            }
+            insercion.executeBatch();
+            conexion.commit();
+        }
+        return filas;
+    }
+
+    private UUID nuevoId() {
+        return tipoId.equals("v7") ? GeneradorUuidV7.generar() : UUID.randomUUID();
+    }
+
+    // mismo formato que usa Hibernate para UUID en binary(16)
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16)
+            .putLong(id.getMostSignificantBits())
+            .putLong(id.getLeastSignificantBits())
+            .array();
+    }
+
+}
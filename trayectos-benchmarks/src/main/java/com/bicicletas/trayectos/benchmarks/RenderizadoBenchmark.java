@@ -0,0 +1,58 @@
+package com.bicicletas.trayectos.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Presentación de trayectos grandes: el texto de CU004/CU005 y el JSON de la API
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderizadoBenchmark {
+
+    @Param({"1000", "10000"})
+    int puntos;
+
+    Trayecto trayecto;
+
+    ObjectMapper json;
+
+    @Setup
+    public void preparar() {
+        trayecto = DatosPrueba.trayectoFinalizado(puntos);
+
+        // misma configuración de fechas que usa Spring Boot
+        json = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Benchmark
+    public String toStringTrayecto() {
+        return trayecto.toString();
+    }
+
+    @Benchmark
+    public String jsonTrayecto() throws JsonProcessingException {
+        return json.writeValueAsString(trayecto);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.bicicletas.trayectos.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.bicicletas.trayectos.TrayectosApplication;
+import com.bicicletas.trayectos.logica.TrayectosService;
+import com.bicicletas.trayectos.modelo.Ubicacion;
+
+// Camino de escritura de TrayectosService contra H2 en memoria: la aplicación
+// completa (JPA, transacciones) sin la capa web
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServicioBenchmark {
+
+    static final int TAMANO_LOTE = 30;
+
+    ConfigurableApplicationContext aplicacion;
+
+    TrayectosService servicio;
+
+    UUID trayectoId;
+
+    int iteracion;
+
+    @Setup(Level.Trial)
+    public void iniciarAplicacion() {
+        // como argumentos para que tengan prioridad sobre application.properties
+        aplicacion = new SpringApplicationBuilder(TrayectosApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        servicio = aplicacion.getBean(TrayectosService.class);
+    }
+
+    // cada iteración usa un trayecto nuevo que crece con cada invocación
+    @Setup(Level.Iteration)
+    public void iniciarTrayecto() throws Exception {
+        trayectoId = servicio.iniciarTrayecto("bici-" + iteracion++,
+            DatosPrueba.LONGITUD_INICIAL, DatosPrueba.LATITUD_INICIAL);
+    }
+
+    @TearDown(Level.Iteration)
+    public void finalizarTrayecto() throws Exception {
+        servicio.finalizarTrayecto(trayectoId,
+            DatosPrueba.LONGITUD_INICIAL, DatosPrueba.LATITUD_INICIAL);
+    }
+
+    @TearDown(Level.Trial)
+    public void detenerAplicacion() {
+        aplicacion.close();
+    }
+
+    @Benchmark
+    public void registrarUbicacion() throws Exception {
+        servicio.registrarUbicacion(trayectoId,
+            DatosPrueba.LONGITUD_INICIAL + 0.001, DatosPrueba.LATITUD_INICIAL + 0.001);
+    }
+
+    // un lote equivale a 30 ubicaciones acumuladas en el dispositivo
+    @Benchmark
+    @OperationsPerInvocation(TAMANO_LOTE)
+    public int registrarUbicacionesEnLote() throws Exception {
+        // las ubicaciones deben ser posteriores a las del lote anterior y no estar en el
+        // futuro, así que quedan separadas un microsegundo y terminan en la fecha actual
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Ubicacion> lote = new ArrayList<>(TAMANO_LOTE);
+        for (int i = 0; i < TAMANO_LOTE; i++) {
+            lote.add(DatosPrueba.ubicacion(ahora.minusNanos((TAMANO_LOTE - 1 - i) * 1000L),
+                DatosPrueba.LONGITUD_INICIAL + i * 0.0001, DatosPrueba.LATITUD_INICIAL));
+        }
+        return servicio.registrarUbicaciones(trayectoId, lote);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.bicicletas.trayectos.carga;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Una bicicleta de la flota: inicia un trayecto, envía su ubicación cada
+// `intervalo` (una por petición o acumuladas en lotes) y lo finaliza, y repite
+// hasta que se acaba el tiempo de la simulación
+final class Bicicleta implements Runnable {
+
+    private final String propietario;
+
+    private final ClienteTrayectos cliente;
+
+    private final Configuracion configuracion;
+
+    private final long finNanos;
+
+    private double longitud;
+
+    private double latitud;
+
+    Bicicleta(String propietario, ClienteTrayectos cliente, Configuracion configuracion, long finNanos) {
+        this.propietario = propietario;
+        this.cliente = cliente;
+        this.configuracion = configuracion;
+        this.finNanos = finNanos;
+
+        // cada bicicleta sale de un punto distinto de Bogotá
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        this.longitud = -74.08 + (aleatorio.nextDouble() - 0.5) * 0.2;
+        this.latitud = 4.61 + (aleatorio.nextDouble() - 0.5) * 0.2;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // reparte el inicio de las bicicletas en el primer intervalo
+            esperar(Duration.ofMillis(ThreadLocalRandom.current().nextLong(configuracion.intervalo().toMillis() + 1)));
+
+            while (!terminada()) {
+                recorrerTrayecto();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recorrerTrayecto() throws InterruptedException {
+        UUID trayectoId = cliente.iniciarTrayecto(propietario, longitud, latitud);
+        if (trayectoId == null) {
+            esperar(configuracion.intervalo());
+            return;
+        }
+
+        List<double[]> pendientes = new ArrayList<>();
+        for (int i = 0; i < configuracion.ubicacionesPorTrayecto() && !terminada(); i++) {
+            esperar(configuracion.intervalo());
+            avanzar();
+
+            if (configuracion.tamanoLote() <= 0) {
+                cliente.registrarUbicacion(trayectoId, longitud, latitud);
+                continue;
+            }
+
+            pendientes.add(new double[] { longitud, latitud });
+            if (pendientes.size() == configuracion.tamanoLote()) {
+                cliente.registrarUbicaciones(trayectoId, pendientes, configuracion.intervalo());
+                pendientes.clear();
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            cliente.registrarUbicaciones(trayectoId, pendientes, configuracion.intervalo());
+        }
+
+        avanzar();
+        cliente.finalizarTrayecto(trayectoId, longitud, latitud);
+    }
+
+    // entre 0 y ~50 metros en cada eje
+    private void avanzar() {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        longitud += (aleatorio.nextDouble() - 0.5) * 0.0009;
+        latitud += (aleatorio.nextDouble() - 0.5) * 0.0009;
+    }
+
+    private boolean terminada() {
+        return System.nanoTime() >= finNanos;
+    }
+
+    private void esperar(Duration tiempo) throws InterruptedException {
+        long restante = finNanos - System.nanoTime();
+        Thread.sleep(Duration.ofNanos(Math.max(0, Math.min(tiempo.toNanos(), restante))));
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.bicicletas.trayectos.carga;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+// Cliente HTTP de la API de trayectos que mide la latencia de cada petición
+final class ClienteTrayectos {
+
+    private final HttpClient http = HttpClient.newBuilder()
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+
+    private final String url;
+
+    private final RegistroLatencias latencias;
+
+    ClienteTrayectos(String url, RegistroLatencias latencias) {
+        this.url = url;
+        this.latencias = latencias;
+    }
+
+    // retorna el id del trayecto o null si la petición falló
+    UUID iniciarTrayecto(String propietario, double longitud, double latitud) {
+        String respuesta = enviar("iniciar", formulario("/trayectos",
+            "propietario=" + propietario + "&" + coordenadas(longitud, latitud)));
+        return respuesta != null ? UUID.fromString(respuesta.replace("\"", "")) : null;
+    }
+
+    boolean registrarUbicacion(UUID trayectoId, double longitud, double latitud) {
+        return enviar("ubicacion", formulario("/trayectos/" + trayectoId + "/ubicaciones",
+            coordenadas(longitud, latitud))) != null;
+    }
+
+    // cada punto es {longitud, latitud}, tomados cada `intervalo` y el último al
+    // momento del envío: el servidor rechaza ubicaciones futuras o anteriores a
+    // las ya registradas
+    boolean registrarUbicaciones(UUID trayectoId, List<double[]> puntos, Duration intervalo) {
+        LocalDateTime ahora = LocalDateTime.now();
+        StringJoiner json = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < puntos.size(); i++) {
+            double[] punto = puntos.get(i);
+            LocalDateTime fechaHora = ahora.minus(intervalo.multipliedBy(puntos.size() - 1 - i));
+            json.add(String.format(Locale.ROOT,
+                "{\"fechaHora\":\"%s\",\"longitud\":%s,\"latitud\":%s}",
+                fechaHora, punto[0], punto[1]));
+        }
+
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create(url + "/trayectos/" + trayectoId + "/ubicaciones/lote"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+            .build();
+        return enviar("lote", peticion) != null;
+    }
+
+    boolean finalizarTrayecto(UUID trayectoId, double longitud, double latitud) {
+        return enviar("finalizar", formulario("/trayectos/" + trayectoId + "/finalizar",
+            coordenadas(longitud, latitud))) != null;
+    }
+
+    private HttpRequest formulario(String ruta, String cuerpo) {
+        return HttpRequest.newBuilder(URI.create(url + ruta))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+            .build();
+    }
+
+    private static String coordenadas(double longitud, double latitud) {
+        return String.format(Locale.ROOT, "longitud=%s&latitud=%s", longitud, latitud);
+    }
+
+    // envía la petición y registra su latencia; retorna el cuerpo o null si falló
+    private String enviar(String operacion, HttpRequest peticion) {
+        long inicio = System.nanoTime();
+        try {
+            HttpResponse<String> respuesta = http.send(peticion, HttpResponse.BodyHandlers.ofString());
+            boolean exitosa = respuesta.statusCode() / 100 == 2;
+            latencias.registrar(operacion, System.nanoTime() - inicio, exitosa);
+            return exitosa ? respuesta.body() : null;
+        } catch (IOException e) {
+            latencias.registrar(operacion, System.nanoTime() - inicio, false);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.bicicletas.trayectos.carga;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Parámetros de la simulación, leídos de los argumentos --clave=valor.
+// Los argumentos que no son de la simulación se pasan a la aplicación embebida
+// (por ejemplo --spring.threads.virtual.enabled=true)
+record Configuracion(
+    int bicicletas,
+    Duration duracion,
+    Duration intervalo,
+    int ubicacionesPorTrayecto,
+    int tamanoLote,
+    String url,
+    String[] argumentosAplicacion
+) {
+
+    static Configuracion desdeArgumentos(String[] args) {
+        int bicicletas = 200;
+        Duration duracion = Duration.ofSeconds(60);
+        Duration intervalo = Duration.ofSeconds(5);
+        int ubicacionesPorTrayecto = 24;
+        int tamanoLote = 0;
+        String url = null;
+        List<String> argumentosAplicacion = new ArrayList<>();
+
+        for (String argumento : args) {
+            String[] partes = argumento.replaceFirst("^--", "").split("=", 2);
+            String valor = partes.length > 1 ? partes[1] : "";
+            switch (partes[0]) {
+                case "bicicletas" -> bicicletas = Integer.parseInt(valor);
+                case "duracion" -> duracion = segundos(valor);
+                case "intervalo" -> intervalo = segundos(valor);
+                case "ubicaciones" -> ubicacionesPorTrayecto = Integer.parseInt(valor);
+                case "lote" -> tamanoLote = Integer.parseInt(valor);
+                case "url" -> url = valor;
+                default -> argumentosAplicacion.add(argumento);
+            }
+        }
+
+        return new Configuracion(bicicletas, duracion, intervalo, ubicacionesPorTrayecto,
+            tamanoLote, url, argumentosAplicacion.toArray(String[]::new));
+    }
+
+    // acepta fracciones de segundo, por ejemplo --intervalo=0.5
+    private static Duration segundos(String valor) {
+        return Duration.ofMillis(Math.round(Double.parseDouble(valor) * 1000));
+    }
+
+    @Override
+    public String toString() {
+        return bicicletas + " bicicletas, " + duracion.toSeconds() + " s, una ubicación cada "
+            + intervalo.toMillis() + " ms, " + ubicacionesPorTrayecto + " ubicaciones por trayecto, "
+            + (tamanoLote > 0 ? "en lotes de " + tamanoLote : "una por petición");
+    }
+
+}
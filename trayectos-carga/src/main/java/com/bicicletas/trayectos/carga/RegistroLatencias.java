@@ -0,0 +1,75 @@
+package com.bicicletas.trayectos.carga;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Guarda la latencia de cada petición por operación y reporta throughput y percentiles
+final class RegistroLatencias {
+
+    private final Map<String, Operacion> operaciones = new ConcurrentSkipListMap<>();
+
+    void registrar(String operacion, long nanos, boolean exitosa) {
+        operaciones.computeIfAbsent(operacion, nombre -> new Operacion()).registrar(nanos, exitosa);
+    }
+
+    void imprimir(PrintStream salida, Duration duracion) {
+        double segundos = duracion.toMillis() / 1000.0;
+
+        salida.printf("%-12s %10s %8s %12s %10s %10s %10s%n",
+            "Operación", "Peticiones", "Errores", "Peticiones/s", "p50 (ms)", "p99 (ms)", "máx (ms)");
+        for (Map.Entry<String, Operacion> entrada : operaciones.entrySet()) {
+            long[] muestras = entrada.getValue().muestrasOrdenadas();
+            salida.printf("%-12s %10d %8d %12.1f %10.2f %10.2f %10.2f%n",
+                entrada.getKey(),
+                muestras.length,
+                entrada.getValue().errores(),
+                muestras.length / segundos,
+                percentil(muestras, 0.50),
+                percentil(muestras, 0.99),
+                percentil(muestras, 1.0));
+        }
+    }
+
+    // percentil por el método del rango más cercano, en milisegundos
+    private static double percentil(long[] muestrasOrdenadas, double p) {
+        if (muestrasOrdenadas.length == 0) {
+            return 0;
+        }
+        int posicion = (int) Math.ceil(p * muestrasOrdenadas.length) - 1;
+        return muestrasOrdenadas[Math.max(posicion, 0)] / 1_000_000.0;
+    }
+
+    private static final class Operacion {
+
+        private long[] muestras = new long[1024];
+
+        private int cantidad;
+
+        private int errores;
+
+        synchronized void registrar(long nanos, boolean exitosa) {
+            if (cantidad == muestras.length) {
+                muestras = Arrays.copyOf(muestras, cantidad * 2);
+            }
+            muestras[cantidad++] = nanos;
+            if (!exitosa) {
+                errores++;
+            }
+        }
+
+        synchronized long[] muestrasOrdenadas() {
+            long[] copia = Arrays.copyOf(muestras, cantidad);
+            Arrays.sort(copia);
+            return copia;
+        }
+
+        synchronized int errores() {
+            return errores;
+        }
+
+    }
+
+}
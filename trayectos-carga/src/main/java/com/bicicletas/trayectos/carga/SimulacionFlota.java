@@ -0,0 +1,71 @@
+package com.bicicletas.trayectos.carga;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.bicicletas.trayectos.TrayectosApplication;
+
+// Simula una flota de bicicletas contra la API REST de trayectos y reporta
+// throughput y latencias (p50/p99) por operación.
+//
+// Sin --url levanta la aplicación embebida en un puerto libre, con H2 en memoria,
+// así que no necesita servicios externos. Ejemplos:
+//
+//   java -jar carga.jar --bicicletas=500 --duracion=60 --intervalo=5
+//   java -jar carga.jar --bicicletas=500 --lote=6
+//   java -jar carga.jar --bicicletas=2000 --intervalo=1 --spring.threads.virtual.enabled=true
+//   java -jar carga.jar --url=http://localhost:8080
+public class SimulacionFlota {
+
+    public static void main(String[] args) throws Exception {
+        Configuracion configuracion = Configuracion.desdeArgumentos(args);
+
+        ConfigurableApplicationContext aplicacion = null;
+        String url = configuracion.url();
+        if (url == null) {
+            aplicacion = iniciarAplicacion(configuracion.argumentosAplicacion());
+            int puerto = ((WebServerApplicationContext) aplicacion).getWebServer().getPort();
+            url = "http://localhost:" + puerto;
+        }
+
+        System.out.println("Simulación: " + configuracion + " contra " + url);
+
+        RegistroLatencias latencias = new RegistroLatencias();
+        ClienteTrayectos cliente = new ClienteTrayectos(url, latencias);
+
+        // un hilo virtual por bicicleta: pasan la mayor parte del tiempo esperando
+        long inicio = System.nanoTime();
+        long fin = inicio + configuracion.duracion().toNanos();
+        try (ExecutorService bicicletas = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < configuracion.bicicletas(); i++) {
+                bicicletas.submit(new Bicicleta("bici-" + i, cliente, configuracion, fin));
+            }
+        }
+        Duration transcurrido = Duration.ofNanos(System.nanoTime() - inicio);
+
+        latencias.imprimir(System.out, transcurrido);
+
+        if (aplicacion != null) {
+            aplicacion.close();
+        }
+    }
+
+    // los argumentos van por línea de comandos para que tengan prioridad sobre
+    // application.properties
+    private static ConfigurableApplicationContext iniciarAplicacion(String[] argumentosAplicacion) {
+        String[] argumentos = new String[argumentosAplicacion.length + 4];
+        argumentos[0] = "--server.port=0";
+        argumentos[1] = "--spring.jpa.show-sql=false";
+        argumentos[2] = "--spring.main.banner-mode=off";
+        argumentos[3] = "--logging.level.root=WARN";
+        System.arraycopy(argumentosAplicacion, 0, argumentos, 4, argumentosAplicacion.length);
+
+        return new SpringApplicationBuilder(TrayectosApplication.class).run(argumentos);
+    }
+
+}
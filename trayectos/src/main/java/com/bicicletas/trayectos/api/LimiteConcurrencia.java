@@ -0,0 +1,122 @@
+package com.bicicletas.trayectos.api;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Con hilos virtuales (spring.threads.virtual.enabled=true) Tomcat ya no limita las
+// peticiones concurrentes al tamaño de su pool de hilos: miles de peticiones pueden
+// pedir a la vez una de las pocas conexiones de Hikari y esperar hasta el
+// connection-timeout. Este filtro deja pasar a la API a lo más
+// trayectos.concurrencia.maxima peticiones (igual al tamaño del pool de conexiones);
+// las demás esperan un permiso hasta trayectos.concurrencia.espera-ms y si no lo
+// obtienen se responden con 503. Una respuesta asíncrona (el resumen en flujo de
+// CU005) conserva su permiso hasta que termina de escribirse, no solo hasta que el
+// controlador retorna
+@Component
+@ConditionalOnProperty("spring.threads.virtual.enabled")
+public class LimiteConcurrencia extends OncePerRequestFilter {
+
+    private final Semaphore permisos;
+
+    private final long espera;
+
+    public LimiteConcurrencia(
+            @Value("${trayectos.concurrencia.maxima:${spring.datasource.hikari.maximum-pool-size:10}}") int maxima,
+            @Value("${trayectos.concurrencia.espera-ms:5000}") long espera,
+            MeterRegistry registro) {
+        this.permisos = new Semaphore(maxima, true);
+        this.espera = espera;
+
+        Gauge.builder("trayectos.concurrencia.esperando", permisos, Semaphore::getQueueLength)
+            .description("Peticiones esperando un permiso para usar la base de datos")
+            .register(registro);
+    }
+
+    // solo la API de trayectos usa la base de datos; actuator y la consola h2 no se limitan
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/trayectos");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean obtenido;
+        try {
+            obtenido = permisos.tryAcquire(espera, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            obtenido = false;
+        }
+
+        if (!obtenido) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new LiberarPermiso());
+            } else {
+                permisos.release();
+            }
+        }
+    }
+
+    // libera el permiso de una respuesta asíncrona cuando termina; onComplete
+    // también llega después de onTimeout y onError, así que se libera una sola vez
+    private final class LiberarPermiso implements AsyncListener {
+
+        private final AtomicBoolean liberado = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent evento) {
+            liberar();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent evento) {
+            liberar();
+        }
+
+        @Override
+        public void onError(AsyncEvent evento) {
+            liberar();
+        }
+
+        // si la petición vuelve a iniciar un proceso asíncrono el contenedor quita
+        // los listeners, así que se registra de nuevo
+        @Override
+        public void onStartAsync(AsyncEvent evento) {
+            evento.getAsyncContext().addListener(this);
+        }
+
+        private void liberar() {
+            if (liberado.compareAndSet(false, true)) {
+                permisos.release();
+            }
+        }
+    }
+
+}
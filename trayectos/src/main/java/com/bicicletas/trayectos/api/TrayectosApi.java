@@ -2,19 +2,40 @@ package com.bicicletas.trayectos.api;
 
 import org.springframework.web.bind.annotation.RestController;
 
-import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.logica.ColaUbicaciones;
+import com.bicicletas.trayectos.logica.RecalculoEstadisticas;
 import com.bicicletas.trayectos.logica.TrayectosService;
-import com.bicicletas.trayectos.modelo.Trayecto;
+import com.bicicletas.trayectos.modelo.EstadoTrayecto;
+import com.bicicletas.trayectos.modelo.PaginaTrayectos;
+import com.bicicletas.trayectos.modelo.Recorrido;
+import com.bicicletas.trayectos.modelo.ResumenTrayecto;
+import com.bicicletas.trayectos.modelo.Ubicacion;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 
@@ -25,33 +46,163 @@ public class TrayectosApi {
     TrayectosService trayectosService;
 
     @Autowired
-    TrayectosRepository trayectosRepository;
+    ColaUbicaciones colaUbicaciones;
+
+    @Autowired
+    RecalculoEstadisticas recalculoEstadisticas;
 
     @GetMapping("/hola")
      public String hola() {
         return "Hola mundo";
      }
 
+     // listado por páginas: la respuesta trae el cursor de la página siguiente;
+     // las ubicaciones solo se incluyen si se piden
      @GetMapping("/trayectos")
-     public List<Trayecto> getTrayectos() {
-        return trayectosRepository.findAll();
+     public PaginaTrayectos<?> getTrayectos(
+           @RequestParam(required = false) String cursor,
+           @RequestParam(defaultValue = "20") int tamano,
+           @RequestParam(defaultValue = "false") boolean ubicaciones) throws Exception {
+        return trayectosService.consultarTrayectos(cursor, tamano, ubicaciones);
+     }
+
+     // distancia acumulada y última ubicación de un trayecto, sin sus ubicaciones
+     @GetMapping("/trayectos/{id}/estado")
+     public EstadoTrayecto consultarEstadoTrayecto(@PathVariable UUID id) throws Exception {
+        return trayectosService.consultarEstadoTrayecto(id);
+     }
+
+     // ubicaciones del trayecto como arreglos paralelos de fechas y horas
+     // (microsegundos), longitudes y latitudes; con `tolerancia` (metros) se
+     // omiten las ubicaciones a menos de esa distancia del recorrido simplificado
+     @GetMapping("/trayectos/{id}/recorrido")
+     public Recorrido consultarRecorrido(
+           @PathVariable UUID id, @RequestParam(required = false) Double tolerancia) throws Exception {
+        return trayectosService.consultarRecorrido(id, tolerancia);
+     }
+
+     // trayectos que pasaron por una caja de coordenadas
+     @GetMapping("/trayectos/area")
+     public List<ResumenTrayecto> consultarTrayectosEnCaja(
+           @RequestParam Double latitudMinima, @RequestParam Double latitudMaxima,
+           @RequestParam Double longitudMinima, @RequestParam Double longitudMaxima) throws Exception {
+        return trayectosService.consultarTrayectosEnCaja(latitudMinima, latitudMaxima, longitudMinima, longitudMaxima);
+     }
+
+     // trayectos que pasaron a menos de `radio` kilómetros de un punto
+     @GetMapping("/trayectos/cerca")
+     public List<ResumenTrayecto> consultarTrayectosCercaDe(
+           @RequestParam Double latitud, @RequestParam Double longitud, @RequestParam Double radio) throws Exception {
+        return trayectosService.consultarTrayectosCercaDe(latitud, longitud, radio);
+     }
+
+     // escribe el resumen directamente en la respuesta (chunked) a medida que
+     // se leen los trayectos, sin armarlo completo en memoria. El rango se valida
+     // antes: una vez que empieza el flujo la respuesta ya salió con 200
+     @GetMapping("/trayectos/resumen")
+     public ResponseEntity<StreamingResponseBody> consultarResumenTrayectos(
+           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin) {
+        try {
+           trayectosService.validarRangoResumen(fechaInicio, fechaFin);
+        } catch (Exception e) {
+           throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        StreamingResponseBody cuerpo = salida -> {
+           Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+           try {
+              trayectosService.consultarResumenTrayectos(fechaInicio, fechaFin, escritor);
+           } catch (IOException e) {
+              throw e;
+           } catch (Exception e) {
+              throw new IOException(e.getMessage(), e);
+           }
+        };
+        return ResponseEntity.ok()
+           .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+           .body(cuerpo);
      }
 
      @PostMapping("/trayectos")
      public UUID iniciarTrayecto(iniciarTrayectoDTO ubicacion) throws Exception {
-        return trayectosService.iniciarTrayecto(ubicacion.getLongitud(), ubicacion.getLatitud());
+        if (ubicacion.getPropietario() == null) {
+           return trayectosService.iniciarTrayecto(ubicacion.getLongitud(), ubicacion.getLatitud());
+        }
+        return trayectosService.iniciarTrayecto(ubicacion.getPropietario(), ubicacion.getLongitud(), ubicacion.getLatitud());
      }  
 
+     // con trayectos.ingesta.asincrona=true la ubicación se valida y se encola
+     // (202); si la cola está llena se rechaza con 429 y el dispositivo reintenta
+     @PostMapping("/trayectos/{id}/ubicaciones")
+     public ResponseEntity<Void> registrarUbicacion(@PathVariable UUID id, registrarUbicacionDTO ubicacion) throws Exception {
+        if (!colaUbicaciones.isAsincrona()) {
+           trayectosService.registrarUbicacion(id, ubicacion.getLongitud(), ubicacion.getLatitud());
+           return ResponseEntity.ok().build();
+        }
+        if (!colaUbicaciones.encolar(id, ubicacion.getLongitud(), ubicacion.getLatitud())) {
+           return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.accepted().build();
+     }
+
+     @PostMapping("/trayectos/{id}/finalizar")
+     public void finalizarTrayecto(@PathVariable UUID id, registrarUbicacionDTO ubicacion) throws Exception {
+        // las ubicaciones ya aceptadas del trayecto se escriben antes de cerrarlo, y
+        // mientras tanto no se aceptan más
+        colaUbicaciones.cerrar(id);
+        try {
+           trayectosService.finalizarTrayecto(id, ubicacion.getLongitud(), ubicacion.getLatitud());
+        } finally {
+           colaUbicaciones.abrir(id);
+        }
+     }
 
+     // recibe en una sola petición las ubicaciones acumuladas por el dispositivo
+     @PostMapping("/trayectos/{id}/ubicaciones/lote")
+     public int registrarUbicaciones(@PathVariable UUID id, @RequestBody List<registrarUbicacionDTO> puntos) throws Exception {
+        List<Ubicacion> nuevasUbicaciones = puntos.stream()
+           .map(punto -> {
+              Ubicacion ubicacion = new Ubicacion();
+              ubicacion.setFechaHora(punto.getFechaHora());
+              ubicacion.setLongitud(punto.getLongitud());
+              ubicacion.setLatitud(punto.getLatitud());
+              return ubicacion;
+           })
+           .toList();
+        return trayectosService.registrarUbicaciones(id, nuevasUbicaciones);
+     }
 
-    
+     // recalcula en segundo plano las estadísticas de los trayectos finalizados; con
+     // el mismo nombre continúa desde su último punto de control (409 si ya hay uno en ejecución)
+     @PostMapping("/trayectos/recalculos/{nombre}")
+     public ResponseEntity<Void> iniciarRecalculo(
+           @PathVariable String nombre, @RequestParam(defaultValue = "false") boolean desdeInicio) {
+        if (!recalculoEstadisticas.iniciar(nombre, desdeInicio)) {
+           return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().build();
+     }
 
+     @GetMapping("/trayectos/recalculos")
+     public ResponseEntity<RecalculoEstadisticas.Progreso> consultarRecalculo() {
+        RecalculoEstadisticas.Progreso progreso = recalculoEstadisticas.consultarProgreso();
+        return progreso != null ? ResponseEntity.ok(progreso) : ResponseEntity.noContent().build();
+     }
 
 }
 
 @Data
 @NoArgsConstructor
 class iniciarTrayectoDTO {
+    String propietario;
+    Double longitud;
+    Double latitud;
+}
+
+@Data
+@NoArgsConstructor
+class registrarUbicacionDTO {
+    LocalDateTime fechaHora;
     Double longitud;
     Double latitud;
 }
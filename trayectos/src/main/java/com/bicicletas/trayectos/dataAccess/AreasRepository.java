@@ -0,0 +1,52 @@
+package com.bicicletas.trayectos.dataAccess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+
+// Lee las ubicaciones de un conjunto de celdas de la cuadrícula espacial (ver
+// CeldaEspacial) con el índice idx_ubicacion_celda, que tiene el trayecto y las
+// coordenadas, así que no se lee la tabla de ubicaciones
+@Repository
+public class AreasRepository {
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    // recibe cada ubicación candidata: id del trayecto, latitud y longitud; retorna
+    // false para dejar de leer
+    @FunctionalInterface
+    public interface UbicacionCandidata {
+        boolean aceptar(UUID trayectoId, double latitud, double longitud);
+    }
+
+    // `rangos` son pares {desde, hasta} de celdas, incluidos
+    public void findUbicacionesEnCeldas(List<long[]> rangos, UbicacionCandidata candidata) {
+        StringBuilder sql = new StringBuilder("select trayecto_id, latitud, longitud from ubicacion where ");
+        List<Object> parametros = new ArrayList<>(rangos.size() * 2);
+        for (int i = 0; i < rangos.size(); i++) {
+            sql.append(i == 0 ? "" : " or ").append("celda between ? and ?");
+            parametros.add(rangos.get(i)[0]);
+            parametros.add(rangos.get(i)[1]);
+        }
+
+        jdbc.query(sql.toString(),
+            (ResultSetExtractor<Void>) filas -> {
+                boolean seguir = true;
+                while (seguir && filas.next()) {
+                    seguir = candidata.aceptar(
+                        RecorridosRepository.uuid(filas.getBytes(1)),
+                        filas.getDouble(2),
+                        filas.getDouble(3));
+                }
+                return null;
+            },
+            parametros.toArray());
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.bicicletas.trayectos.dataAccess;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.bicicletas.trayectos.modelo.CodificadorRecorrido;
+import com.bicicletas.trayectos.modelo.EstadisticasTrayecto;
+import com.bicicletas.trayectos.modelo.Recorrido;
+
+// Lecturas y escrituras por lotes del recálculo de estadísticas (ver
+// RecalculoEstadisticas), por JDBC y sin pasar por la sesión de JPA: se leen y
+// escriben miles de trayectos que no hace falta administrar como entidades
+@Repository
+public class RecalculosRepository {
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    // trayecto finalizado con sus estadísticas actuales y todas sus ubicaciones
+    public record TrayectoGuardado(
+        UUID id, long version, String propietario, LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin,
+        long duracion, double distanciaTotal, boolean codificado, Recorrido recorrido) {}
+
+    // avance guardado de un recálculo
+    public record PuntoControl(UUID ultimoId, long procesados) {}
+
+    // ids de los siguientes `limite` trayectos finalizados, en orden de id (llave
+    // primaria), después de `desde` (null para empezar desde el primero)
+    public List<UUID> findIdsFinalizadosDespuesDe(UUID desde, int limite) {
+        if (desde == null) {
+            return jdbc.query("select id from trayecto where en_proceso = false order by id limit ?",
+                (fila, i) -> RecorridosRepository.uuid(fila.getBytes(1)), limite);
+        }
+        return jdbc.query("select id from trayecto where id > ? and en_proceso = false order by id limit ?",
+            (fila, i) -> RecorridosRepository.uuid(fila.getBytes(1)), RecorridosRepository.bytes(desde), limite);
+    }
+
+    // los trayectos indicados con sus ubicaciones, de las filas de ubicacion de todos
+    // ellos en una consulta. El recorrido codificado redondea las coordenadas a 1e-6
+    // grados, así que solo se usa para los trayectos que ya no tienen filas, y no si
+    // está simplificado: a esos trayectos les faltan ubicaciones y quedan con el
+    // recorrido vacío
+    public List<TrayectoGuardado> findByIdIn(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String marcas = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] parametros = ids.stream().map(RecorridosRepository::bytes).toArray();
+
+        List<Object[]> filas = jdbc.query(
+            "select id, propietario, fecha_hora_inicio, fecha_hora_fin, duracion, distancia_total, recorrido_codificado, recorrido_simplificado, version "
+                + "from trayecto where id in (" + marcas + ")",
+            (fila, i) -> new Object[] {
+                RecorridosRepository.uuid(fila.getBytes(1)),
+                fila.getString(2),
+                fila.getTimestamp(3).toLocalDateTime(),
+                fila.getTimestamp(4).toLocalDateTime(),
+                fila.getLong(5),
+                fila.getDouble(6),
+                fila.getBytes(7),
+                fila.getBoolean(8),
+                fila.getLong(9)
+            },
+            parametros);
+
+        Map<UUID, Recorrido> deUbicaciones = new HashMap<>();
+        for (Object[] fila : filas) {
+            deUbicaciones.put((UUID) fila[0], new Recorrido());
+        }
+        if (!deUbicaciones.isEmpty()) {
+            String marcasUbicaciones = String.join(", ", Collections.nCopies(deUbicaciones.size(), "?"));
+            jdbc.query("select trayecto_id, fecha_hora, longitud, latitud from ubicacion "
+                    + "where trayecto_id in (" + marcasUbicaciones + ") order by trayecto_id, fecha_hora",
+                fila -> {
+                    deUbicaciones.get(RecorridosRepository.uuid(fila.getBytes(1))).agregar(
+                        Recorrido.aMicrosegundos(fila.getTimestamp(2)),
+                        fila.getDouble(3),
+                        fila.getDouble(4));
+                },
+                deUbicaciones.keySet().stream().map(RecorridosRepository::bytes).toArray());
+        }
+
+        List<TrayectoGuardado> trayectos = new ArrayList<>(filas.size());
+        for (Object[] fila : filas) {
+            UUID id = (UUID) fila[0];
+            byte[] codificado = (byte[]) fila[6];
+            Recorrido recorrido = deUbicaciones.get(id);
+            if (codificado != null && recorrido.getTamano() == 0 && !(Boolean) fila[7]) {
+                recorrido = CodificadorRecorrido.decodificar(codificado);
+            }
+            trayectos.add(new TrayectoGuardado(id, (Long) fila[8], (String) fila[1], (LocalDateTime) fila[2], (LocalDateTime) fila[3],
+                (Long) fila[4], (Double) fila[5], codificado != null, recorrido));
+        }
+        return trayectos;
+    }
+
+    // escribe las estadísticas en un solo lote de sentencias; a los trayectos sin
+    // recorrido codificado se les guarda (`recorridos` tiene null para los que ya lo tienen)
+    public void actualizarEstadisticas(List<UUID> ids, List<EstadisticasTrayecto> estadisticas, List<byte[]> recorridos) {
+        List<Object[]> parametros = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            EstadisticasTrayecto e = estadisticas.get(i);
+            parametros.add(new Object[] {
+                e.numeroUbicaciones(), e.distanciaTotal(), e.duracion(), e.velocidadPromedio(),
+                Timestamp.valueOf(e.ultimaFechaHora()), e.ultimaLongitud(), e.ultimaLatitud(),
+                e.latitudMinima(), e.latitudMaxima(), e.longitudMinima(), e.longitudMaxima(),
+                recorridos.get(i), RecorridosRepository.bytes(ids.get(i))
+            });
+        }
+        jdbc.batchUpdate("update trayecto set numero_ubicaciones = ?, distancia_total = ?, duracion = ?, velocidad_promedio = ?, "
+            + "ultima_fecha_hora = ?, ultima_longitud = ?, ultima_latitud = ?, "
+            + "latitud_minima = ?, latitud_maxima = ?, longitud_minima = ?, longitud_maxima = ?, "
+            + "recorrido_codificado = coalesce(recorrido_codificado, ?), version = version + 1 "
+            + "where id = ?", parametros);
+    }
+
+    // suma a cada resumen diario la diferencia {duración, distancia} de sus trayectos
+    public void ajustarResumenesDiarios(Map<LocalDate, Map<String, double[]>> diferencias) {
+        List<Object[]> parametros = new ArrayList<>();
+        diferencias.forEach((dia, porPropietario) -> porPropietario.forEach((propietario, diferencia) ->
+            parametros.add(new Object[] { (long) diferencia[0], diferencia[1], dia, propietario })));
+        jdbc.batchUpdate("update resumen_diario set duracion_total = duracion_total + ?, distancia_total = distancia_total + ? "
+            + "where dia = ? and propietario = ?", parametros);
+    }
+
+    public Optional<PuntoControl> findPuntoControl(String nombre) {
+        return jdbc.query("select ultimo_id, procesados from punto_control_recalculo where nombre = ?",
+            (fila, i) -> new PuntoControl(
+                fila.getBytes(1) != null ? RecorridosRepository.uuid(fila.getBytes(1)) : null,
+                fila.getLong(2)),
+            nombre).stream().findFirst();
+    }
+
+    public void guardarPuntoControl(String nombre, UUID ultimoId, long procesados) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        byte[] id = ultimoId != null ? RecorridosRepository.bytes(ultimoId) : null;
+        int actualizados = jdbc.update("update punto_control_recalculo set ultimo_id = ?, procesados = ?, actualizado = ? where nombre = ?",
+            id, procesados, ahora, nombre);
+        if (actualizados == 0) {
+            jdbc.update("insert into punto_control_recalculo (nombre, ultimo_id, procesados, actualizado) values (?, ?, ?, ?)",
+                nombre, id, procesados, ahora);
+        }
+    }
+
+    public void borrarPuntoControl(String nombre) {
+        jdbc.update("delete from punto_control_recalculo where nombre = ?", nombre);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.bicicletas.trayectos.dataAccess;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.bicicletas.trayectos.modelo.Recorrido;
+
+// Lee las ubicaciones de un trayecto directamente a un Recorrido (arreglos de
+// tipos primitivos), sin crear una entidad Ubicacion por punto ni pasar por la
+// sesión de JPA
+@Repository
+public class RecorridosRepository {
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    // usa el índice (trayecto_id, fecha_hora); `capacidad` es el número de
+    // ubicaciones esperado, para no tener que crecer los arreglos
+    public Recorrido findByTrayectoId(UUID trayectoId, int capacidad) {
+        Recorrido recorrido = new Recorrido(capacidad);
+        jdbc.query("select fecha_hora, longitud, latitud from ubicacion where trayecto_id = ? order by fecha_hora",
+            fila -> {
+                recorrido.agregar(
+                    Recorrido.aMicrosegundos(fila.getTimestamp(1)),
+                    fila.getDouble(2),
+                    fila.getDouble(3));
+            },
+            bytes(trayectoId));
+        return recorrido.recortar();
+    }
+
+    // el UUID como binary(16), igual que lo guarda Hibernate en MySQL; H2 lo
+    // convierte a su tipo uuid
+    static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16)
+            .putLong(id.getMostSignificantBits())
+            .putLong(id.getLeastSignificantBits())
+            .array();
+    }
+
+    // inverso de bytes: el UUID leído de una columna binary(16) o uuid
+    static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.bicicletas.trayectos.dataAccess;
+
+import java.time.LocalDate;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.bicicletas.trayectos.modelo.ResumenDiario;
+import com.bicicletas.trayectos.modelo.TotalesTrayectos;
+
+@Repository
+public interface ResumenesDiariosRepository 
+    extends JpaRepository<ResumenDiario, ResumenDiario.Llave>
+{
+
+    // suma un trayecto iniciado al día del propietario; retorna 0 si aún no existe la fila
+    @Modifying
+    @Query("update ResumenDiario r set r.cantidad = r.cantidad + 1 where r.dia = :dia and r.propietario = :propietario")
+    int sumarTrayecto(LocalDate dia, String propietario);
+
+    // suma la duración y distancia de un trayecto finalizado al día en que se inició
+    @Modifying
+    @Query("update ResumenDiario r set r.duracionTotal = r.duracionTotal + :duracion, r.distanciaTotal = r.distanciaTotal + :distancia "
+        + "where r.dia = :dia and r.propietario = :propietario")
+    int sumarFinalizado(LocalDate dia, String propietario, long duracion, double distancia);
+
+    // crea la fila del día del propietario sin dejar la entidad cargada en la sesión
+    @Modifying
+    @Query("insert into ResumenDiario (dia, propietario, cantidad, duracionTotal, distanciaTotal) "
+        + "values (:dia, :propietario, :cantidad, :duracion, :distancia)")
+    int insertar(LocalDate dia, String propietario, long cantidad, long duracion, double distancia);
+
+    // totales de los días entre `desde` (incluido) y `hasta` (excluido), de todos los propietarios
+    @Query("select coalesce(sum(r.cantidad), 0) as cantidad, coalesce(sum(r.duracionTotal), 0) as duracionTotal, "
+        + "coalesce(sum(r.distanciaTotal), 0.0) as distanciaTotal "
+        + "from ResumenDiario r where r.dia >= :desde and r.dia < :hasta")
+    TotalesTrayectos totalesEntreDias(LocalDate desde, LocalDate hasta);
+
+}
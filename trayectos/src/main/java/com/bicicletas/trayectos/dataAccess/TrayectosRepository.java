@@ -1,13 +1,28 @@
 package com.bicicletas.trayectos.dataAccess;
 
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import com.bicicletas.trayectos.modelo.EstadoTrayecto;
+import com.bicicletas.trayectos.modelo.ResumenTrayecto;
+import com.bicicletas.trayectos.modelo.TotalesTrayectos;
 import com.bicicletas.trayectos.modelo.Trayecto;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.time.LocalDateTime;
 
 
@@ -16,11 +31,113 @@ public interface TrayectosRepository
     extends JpaRepository<Trayecto, UUID>
 {
 
-    // obtiene el trayecto con "enProceso == true"")
-    Trayecto findByEnProcesoTrue();
+    // indica si el propietario tiene un trayecto en proceso (usa el índice único de propietarioActivo)
+    boolean existsByPropietarioActivo(String propietarioActivo);
+
+    // indica si existe un trayecto en proceso con ese id
+    boolean existsByIdAndEnProcesoTrue(UUID id);
+
+    // cuenta los trayectos en proceso (usa el índice único de propietarioActivo)
+    long countByPropietarioActivoIsNotNull();
+
+    // obtiene el trayecto en proceso del propietario
+    Optional<Trayecto> findByPropietarioActivo(String propietarioActivo);
+
+    // obtiene el estado acumulado del trayecto (distancia, número de ubicaciones,
+    // última ubicación y caja) en un Trayecto no administrado: no se carga la
+    // entidad ni se revisa al confirmar
+    @Query("select new com.bicicletas.trayectos.modelo.Trayecto(t.id, t.version, t.enProceso, t.fechaHoraInicio, "
+        + "t.distanciaTotal, t.numeroUbicaciones, t.ultimaFechaHora, t.ultimaLongitud, t.ultimaLatitud, "
+        + "t.latitudMinima, t.latitudMaxima, t.longitudMinima, t.longitudMaxima) "
+        + "from Trayecto t where t.id = :id")
+    Optional<Trayecto> findAcumuladoById(UUID id);
+
+    // escribe el estado acumulado solo si el trayecto sigue activo y ninguna otra
+    // operación lo cambió desde que se leyó; retorna el número de filas cambiadas (0 o 1)
+    @Modifying
+    @Query("update Trayecto t set t.distanciaTotal = :#{#acumulado.distanciaTotal}, "
+        + "t.numeroUbicaciones = :#{#acumulado.numeroUbicaciones}, t.ultimaFechaHora = :#{#acumulado.ultimaFechaHora}, "
+        + "t.ultimaLongitud = :#{#acumulado.ultimaLongitud}, t.ultimaLatitud = :#{#acumulado.ultimaLatitud}, "
+        + "t.latitudMinima = :#{#acumulado.latitudMinima}, t.latitudMaxima = :#{#acumulado.latitudMaxima}, "
+        + "t.longitudMinima = :#{#acumulado.longitudMinima}, t.longitudMaxima = :#{#acumulado.longitudMaxima}, "
+        + "t.version = t.version + 1 "
+        + "where t.id = :#{#acumulado.id} and t.enProceso = true and t.version = :#{#acumulado.version}")
+    int guardarAcumulado(Trayecto acumulado);
+
+    // obtiene el trayecto bloqueando su fila hasta terminar la transacción (select
+    // ... for update): las ubicaciones que se registran al mismo tiempo esperan y
+    // después encuentran el trayecto finalizado, en lugar de hacer fallar la finalización
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from Trayecto t where t.id = :id")
+    Optional<Trayecto> findBloqueadoById(UUID id);
+
+    // obtiene la distancia acumulada y la última ubicación del trayecto (una sola fila)
+    Optional<EstadoTrayecto> findEstadoById(UUID id);
+
+    // obtiene el trayecto junto con sus ubicaciones en una sola consulta
+    @EntityGraph(attributePaths = "ubicaciones")
+    Optional<Trayecto> findConUbicacionesById(UUID id);
+
+    // obtiene los trayectos indicados junto con sus ubicaciones en una sola consulta
+    @EntityGraph(attributePaths = "ubicaciones")
+    List<Trayecto> findConUbicacionesByIdIn(List<UUID> ids);
+
+    // primera página del listado de trayectos ordenado por fecha y hora de inicio e id
+    @Query("select t.id as id, t.propietario as propietario, t.enProceso as enProceso, "
+        + "t.fechaHoraInicio as fechaHoraInicio, t.fechaHoraFin as fechaHoraFin, t.duracion as duracion, "
+        + "t.distanciaTotal as distanciaTotal, t.numeroUbicaciones as numeroUbicaciones, t.velocidadPromedio as velocidadPromedio "
+        + "from Trayecto t order by t.fechaHoraInicio, t.id")
+    List<ResumenTrayecto> findPrimeraPagina(Limit limit);
+
+    // página siguiente al último trayecto leído (fechaHoraInicio, id): la consulta
+    // continúa desde la llave en lugar de saltar filas con offset, así que cuesta
+    // lo mismo en la primera página que en la número 10.000. La condición empieza
+    // con fechaHoraInicio >= para que se use el índice idx_trayecto_inicio
+    @Query("select t.id as id, t.propietario as propietario, t.enProceso as enProceso, "
+        + "t.fechaHoraInicio as fechaHoraInicio, t.fechaHoraFin as fechaHoraFin, t.duracion as duracion, "
+        + "t.distanciaTotal as distanciaTotal, t.numeroUbicaciones as numeroUbicaciones, t.velocidadPromedio as velocidadPromedio "
+        + "from Trayecto t where t.fechaHoraInicio >= :fechaHoraInicio and (t.fechaHoraInicio > :fechaHoraInicio or t.id > :id) "
+        + "order by t.fechaHoraInicio, t.id")
+    List<ResumenTrayecto> findPaginaDespuesDe(LocalDateTime fechaHoraInicio, UUID id, Limit limit);
+
+    // resumen de los trayectos indicados, en orden de inicio
+    @Query("select t.id as id, t.propietario as propietario, t.enProceso as enProceso, "
+        + "t.fechaHoraInicio as fechaHoraInicio, t.fechaHoraFin as fechaHoraFin, t.duracion as duracion, "
+        + "t.distanciaTotal as distanciaTotal, t.numeroUbicaciones as numeroUbicaciones, t.velocidadPromedio as velocidadPromedio "
+        + "from Trayecto t where t.id in :ids order by t.fechaHoraInicio, t.id")
+    List<ResumenTrayecto> findResumenesByIdIn(Collection<UUID> ids);
+
+    // trayectos cuya caja se cruza con la indicada y que ya no tienen filas de
+    // ubicacion (se borraron al finalizar, ver trayectos.recorrido.conservar-ubicaciones):
+    // sus ubicaciones solo están en el recorrido codificado
+    @Query("select t from Trayecto t where t.latitudMinima <= :latitudMaxima and t.latitudMaxima >= :latitudMinima "
+        + "and t.longitudMinima <= :longitudMaxima and t.longitudMaxima >= :longitudMinima "
+        + "and t.recorridoCodificado is not null and not exists (select 1 from Ubicacion u where u.trayecto = t)")
+    List<Trayecto> findCompactadosEnCaja(double latitudMinima, double latitudMaxima, double longitudMinima, double longitudMaxima);
+
+    // obtiene la cantidad, duración total y distancia total de los trayectos entre
+    // fecha inicio y fecha fin. Los trayectos en proceso se cuentan pero no suman
+    // duración ni distancia (su distancia acumulada aún cambia), igual que en los
+    // resúmenes diarios, que las suman al finalizar
+    @Query("select count(t) as cantidad, "
+        + "coalesce(sum(case when t.enProceso = false then t.duracion end), 0) as duracionTotal, "
+        + "coalesce(sum(case when t.enProceso = false then t.distanciaTotal end), 0.0) as distanciaTotal "
+        + "from Trayecto t where t.fechaHoraInicio >= :fechaHoraInicio and t.fechaHoraInicio <= :fechaHoraFin")
+    TotalesTrayectos totalesEnRangoFechas(LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin);
+
+    // igual que totalesEnRangoFechas pero sin incluir fecha fin (bordes de un rango
+    // que se completa con los resúmenes diarios)
+    @Query("select count(t) as cantidad, "
+        + "coalesce(sum(case when t.enProceso = false then t.duracion end), 0) as duracionTotal, "
+        + "coalesce(sum(case when t.enProceso = false then t.distanciaTotal end), 0.0) as distanciaTotal "
+        + "from Trayecto t where t.fechaHoraInicio >= :fechaHoraInicio and t.fechaHoraInicio < :fechaHoraFin")
+    TotalesTrayectos totalesAntesDe(LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin);
 
-    // obtiene los trayectos entre fecha inico y fecha fin
-    @Query("select t from Trayecto t where t.fechaHoraInicio >= :fechaHoraInicio and t.fechaHoraInicio <= :fechaHoraFin")
-    List<Trayecto> findEnRangoFechas(LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin);
+    // recorre los trayectos entre fecha inicio y fecha fin leyendo de a `fetchSize`
+    // filas, sin cargar todo el rango en memoria (se debe cerrar el Stream y usar
+    // dentro de una transacción)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("select t from Trayecto t where t.fechaHoraInicio >= :fechaHoraInicio and t.fechaHoraInicio <= :fechaHoraFin order by t.fechaHoraInicio, t.id")
+    Stream<Trayecto> streamEnRangoFechas(LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin);
 
 }
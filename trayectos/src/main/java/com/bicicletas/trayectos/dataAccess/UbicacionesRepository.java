@@ -3,6 +3,8 @@ package com.bicicletas.trayectos.dataAccess;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.bicicletas.trayectos.modelo.Ubicacion;
@@ -12,4 +14,10 @@ public interface UbicacionesRepository
     extends JpaRepository<Ubicacion, UUID>
 {
 
+    // borra las ubicaciones del trayecto con una sola sentencia; antes escribe los
+    // cambios pendientes y después limpia la sesión, cuyas ubicaciones ya no existen
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Ubicacion u where u.trayecto.id = :trayectoId")
+    int deleteByTrayectoId(UUID trayectoId);
+
 }
@@ -0,0 +1,109 @@
+package com.bicicletas.trayectos.logica;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+// Caché en memoria de la consulta (CU004) de los trayectos finalizados, que ya no
+// cambian. Se limita por el total de ubicaciones de los trayectos guardados, no por
+// el número de trayectos, porque el texto de un trayecto crece con sus ubicaciones.
+// Aciertos, fallos y desalojos se publican como cache.* con cache=trayectos.finalizados.
+//
+// Cada vista guarda la versión del trayecto con que se generó, y no reemplaza a una
+// de versión mayor: una consulta que leyó el trayecto antes de que el recálculo de
+// estadísticas lo cambiara no vuelve a dejar en la caché la vista anterior
+@Component
+public class CacheTrayectos {
+
+    @Autowired
+    MeterRegistry registro;
+
+    @Value("${trayectos.cache.ubicaciones-maximas:2000000}")
+    long ubicacionesMaximas;
+
+    private Cache<UUID, Vista> vistas;
+
+    @PostConstruct
+    void crear() {
+        vistas = Caffeine.newBuilder()
+            .maximumWeight(ubicacionesMaximas)
+            .weigher((UUID id, Vista vista) -> vista.ubicaciones())
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(registro, vistas, "trayectos.finalizados");
+    }
+
+    // retorna null si el trayecto no está en la caché
+    public String consultar(UUID trayectoId) {
+        Vista vista = vistas.getIfPresent(trayectoId);
+        return vista != null ? vista.texto() : null;
+    }
+
+    // los trayectos en proceso no se guardan
+    public void guardar(Trayecto trayecto, String texto) {
+        if (trayecto.isEnProceso()) {
+            return;
+        }
+        int ubicaciones = trayecto.getNumeroUbicaciones() != null ? trayecto.getNumeroUbicaciones() : 0;
+        long version = trayecto.getVersion() != null ? trayecto.getVersion() : 0;
+        vistas.asMap().compute(trayecto.getId(), (id, actual) -> actual != null && actual.version() > version
+            ? actual
+            : new Vista(texto, Math.max(ubicaciones, 1), version));
+    }
+
+    // guarda el trayecto cuando la transacción actual confirma, para no dejar en la
+    // caché un trayecto cuya finalización se revirtió
+    public void guardarAlConfirmar(Trayecto trayecto) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            guardar(trayecto, trayecto.toString());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                guardar(trayecto, trayecto.toString());
+            }
+        });
+    }
+
+    // quita las vistas de trayectos cuyas estadísticas cambiaron (ver
+    // RecalculoEstadisticas) cuando la transacción actual confirma. En su lugar queda
+    // una marca sin texto con la nueva versión de cada trayecto, así solo se vuelven
+    // a guardar vistas generadas con esa versión o una mayor
+    public void invalidarAlConfirmar(Map<UUID, Long> versiones) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidar(versiones);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidar(versiones);
+            }
+        });
+    }
+
+    private void invalidar(Map<UUID, Long> versiones) {
+        versiones.forEach((trayectoId, version) -> vistas.asMap().compute(trayectoId,
+            (id, actual) -> actual != null && actual.version() > version ? actual : new Vista(null, 1, version)));
+    }
+
+    // texto es null en las marcas que deja invalidar
+    private record Vista(String texto, int ubicaciones, long version) {
+    }
+
+}
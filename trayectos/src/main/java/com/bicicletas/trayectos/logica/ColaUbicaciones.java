@@ -0,0 +1,364 @@
+package com.bicicletas.trayectos.logica;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.modelo.Ubicacion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Ingesta asíncrona de ubicaciones (trayectos.ingesta.asincrona=true).
+// La API valida cada ubicación y la deja en una cola acotada en memoria; un hilo
+// escritor la vacía en lotes con TrayectosService.registrarUbicacionesEncoladas, una
+// transacción (y una conexión) por lote en lugar de una por ubicación; si el lote
+// falla se escribe cada trayecto por separado, y solo se descartan las ubicaciones
+// del trayecto que falla, igual que las de un trayecto que ya no está activo (las
+// cuenta trayectos.ingesta.descartadas). Mientras se finaliza un trayecto no se
+// aceptan más ubicaciones suyas (ver cerrar). Un lote se escribe al juntar trayectos.ingesta.tamano-lote
+// ubicaciones o cuando pasan trayectos.ingesta.intervalo-ms desde el lote anterior,
+// o de inmediato si alguien espera las de un trayecto. Si la cola está llena la
+// ubicación no se acepta (la API responde 429). Al detener la aplicación se escriben
+// las ubicaciones pendientes antes de cerrar la conexión a la base de datos
+@Component
+public class ColaUbicaciones {
+
+    @Autowired
+    TrayectosService trayectosService;
+
+    @Autowired
+    TrayectosRepository trayectos;
+
+    @Autowired
+    MetricasTrayectos metricas;
+
+    @Autowired
+    MeterRegistry registro;
+
+    @Value("${trayectos.ingesta.asincrona:false}")
+    boolean asincrona;
+
+    @Value("${trayectos.ingesta.capacidad:10000}")
+    int capacidad;
+
+    @Value("${trayectos.ingesta.tamano-lote:500}")
+    int tamanoLote;
+
+    @Value("${trayectos.ingesta.intervalo-ms:200}")
+    long intervalo;
+
+    // ubicación aceptada por la API que aún no se ha escrito
+    record UbicacionEncolada(UUID trayectoId, LocalDateTime fechaHora, double longitud, double latitud) {}
+
+    private BlockingQueue<UbicacionEncolada> cola;
+
+    private Thread escritor;
+
+    private Counter descartadas;
+
+    // los contadores y el estado se protegen con un ReentrantLock y no con
+    // synchronized: un hilo virtual que espera en un bloque synchronized no libera
+    // su hilo de plataforma (Java 21)
+    private final ReentrantLock candado = new ReentrantLock();
+
+    // avisa al escritor que hay un lote listo, y a quien vacía que se escribió uno
+    private final Condition cambio = candado.newCondition();
+
+    private long encoladas;
+
+    private long escritas;
+
+    // las ubicaciones encoladas hasta este número se deben escribir sin esperar el intervalo
+    private long vaciarHasta;
+
+    // ubicaciones aún sin escribir de cada trayecto, contando las que se están
+    // validando para encolar
+    private final Map<UUID, Integer> pendientes = new HashMap<>();
+
+    // trayectos que se están finalizando (ver cerrar)
+    private final Set<UUID> cerrados = new HashSet<>();
+
+    // hilos que esperan las ubicaciones de un trayecto (ver vaciar(UUID))
+    private int esperando;
+
+    private boolean detenida;
+
+    @PostConstruct
+    void iniciar() {
+        if (!asincrona) {
+            return;
+        }
+
+        cola = new ArrayBlockingQueue<>(capacidad);
+
+        Gauge.builder("trayectos.ingesta.pendientes", cola, BlockingQueue::size)
+            .description("Ubicaciones aceptadas que aún no se han escrito")
+            .register(registro);
+
+        descartadas = Counter.builder("trayectos.ingesta.descartadas")
+            .description("Ubicaciones aceptadas que no se pudieron escribir")
+            .register(registro);
+
+        escritor = Thread.ofPlatform()
+            .name("escritor-ubicaciones")
+            .daemon()
+            .start(this::escribirLotes);
+    }
+
+    public boolean isAsincrona() {
+        return asincrona;
+    }
+
+    // Valida la ubicación y la deja en la cola. Retorna false si la cola está llena
+    // (o la aplicación se está deteniendo) y la ubicación no se aceptó
+    public boolean encolar(UUID trayectoId, Double longitud, Double latitud)
+        throws Exception
+    {
+        if (longitud == null || latitud == null) {
+            throw new Exception("La ubicación debe tener longitud y latitud");
+        }
+
+        // la ubicación cuenta como pendiente desde antes de validar el trayecto: quien
+        // lo finaliza (ver cerrar) la espera aunque aún no esté en la cola
+        candado.lock();
+        try {
+            if (cerrados.contains(trayectoId)) {
+                metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_ACTIVO);
+                throw new Exception("No existe un trayecto activo con ese id");
+            }
+            pendientes.merge(trayectoId, 1, Integer::sum);
+        } finally {
+            candado.unlock();
+        }
+
+        boolean encolada = false;
+        try {
+            // solo se lee la fila del trayecto, sin abrir una transacción de escritura
+            if (!trayectos.existsByIdAndEnProcesoTrue(trayectoId)) {
+                metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_ACTIVO);
+                throw new Exception("No existe un trayecto activo con ese id");
+            }
+
+            UbicacionEncolada ubicacion = new UbicacionEncolada(trayectoId, LocalDateTime.now(), longitud, latitud);
+            candado.lock();
+            try {
+                if (detenida || !cola.offer(ubicacion)) {
+                    metricas.rechazo(MetricasTrayectos.COLA_UBICACIONES_LLENA);
+                    return false;
+                }
+                encoladas++;
+                encolada = true;
+                if (cola.size() >= tamanoLote || esperando > 0) {
+                    cambio.signalAll();
+                }
+            } finally {
+                candado.unlock();
+            }
+            return true;
+        } finally {
+            if (!encolada) {
+                candado.lock();
+                try {
+                    liberar(trayectoId);
+                    cambio.signalAll();
+                } finally {
+                    candado.unlock();
+                }
+            }
+        }
+    }
+
+    // Deja de aceptar ubicaciones del trayecto y espera a que se escriban las ya
+    // aceptadas; se usa antes de finalizarlo, así ninguna ubicación aceptada llega
+    // después de que deja de estar activo. abrir vuelve a aceptarlas (si la
+    // finalización falla el trayecto sigue activo)
+    public void cerrar(UUID trayectoId)
+        throws InterruptedException
+    {
+        if (!asincrona) {
+            return;
+        }
+        candado.lock();
+        try {
+            cerrados.add(trayectoId);
+        } finally {
+            candado.unlock();
+        }
+        vaciar(trayectoId);
+    }
+
+    public void abrir(UUID trayectoId) {
+        if (!asincrona) {
+            return;
+        }
+        candado.lock();
+        try {
+            cerrados.remove(trayectoId);
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    // Espera a que se escriban las ubicaciones del trayecto aceptadas hasta ahora; se
+    // usa antes de finalizarlo para que su recorrido quede completo, sin esperar las
+    // de otros trayectos que se encolen mientras tanto
+    public void vaciar(UUID trayectoId)
+        throws InterruptedException
+    {
+        if (!asincrona) {
+            return;
+        }
+        candado.lock();
+        try {
+            esperando++;
+            cambio.signalAll();
+            while (pendientes.containsKey(trayectoId) && escritor.isAlive()) {
+                cambio.await(intervalo, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            esperando--;
+            candado.unlock();
+        }
+    }
+
+    // Espera a que se escriban todas las ubicaciones aceptadas hasta ahora
+    public void vaciar()
+        throws InterruptedException
+    {
+        if (!asincrona) {
+            return;
+        }
+        candado.lock();
+        try {
+            long meta = encoladas;
+            vaciarHasta = Math.max(vaciarHasta, meta);
+            cambio.signalAll();
+            while (escritas < meta && escritor.isAlive()) {
+                cambio.await(intervalo, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    // al detener la aplicación no se aceptan más ubicaciones y el escritor termina
+    // después de escribir las pendientes
+    @PreDestroy
+    void detener()
+        throws InterruptedException
+    {
+        if (!asincrona) {
+            return;
+        }
+        candado.lock();
+        try {
+            detenida = true;
+            cambio.signalAll();
+        } finally {
+            candado.unlock();
+        }
+        escritor.join();
+    }
+
+    private void escribirLotes() {
+        List<UbicacionEncolada> lote = new ArrayList<>(tamanoLote);
+        while (true) {
+            candado.lock();
+            try {
+                long espera = TimeUnit.MILLISECONDS.toNanos(intervalo);
+                while (!detenida && cola.size() < tamanoLote && vaciarHasta <= escritas
+                        && (esperando == 0 || cola.isEmpty()) && espera > 0) {
+                    try {
+                        espera = cambio.awaitNanos(espera);
+                    } catch (InterruptedException e) {
+                        detenida = true;
+                    }
+                }
+                if (detenida && cola.isEmpty()) {
+                    cambio.signalAll();
+                    return;
+                }
+            } finally {
+                candado.unlock();
+            }
+
+            cola.drainTo(lote, tamanoLote);
+            if (!lote.isEmpty()) {
+                escribir(lote);
+            }
+
+            candado.lock();
+            try {
+                escritas += lote.size();
+                for (UbicacionEncolada escrita : lote) {
+                    liberar(escrita.trayectoId());
+                }
+                cambio.signalAll();
+            } finally {
+                candado.unlock();
+            }
+            lote.clear();
+        }
+    }
+
+    // agrupa el lote por trayecto, conservando el orden de llegada
+    private void escribir(List<UbicacionEncolada> lote) {
+        Map<UUID, List<Ubicacion>> porTrayecto = new LinkedHashMap<>();
+        for (UbicacionEncolada encolada : lote) {
+            Ubicacion ubicacion = new Ubicacion();
+            ubicacion.setFechaHora(encolada.fechaHora());
+            ubicacion.setLongitud(encolada.longitud());
+            ubicacion.setLatitud(encolada.latitud());
+            porTrayecto.computeIfAbsent(encolada.trayectoId(), id -> new ArrayList<>()).add(ubicacion);
+        }
+
+        try {
+            contarNoActivos(trayectosService.registrarUbicacionesEncoladas(porTrayecto), porTrayecto);
+        } catch (Exception e) {
+            // el lote completo se revirtió: cada trayecto se escribe en su propia
+            // transacción y solo se descartan las ubicaciones del que vuelva a fallar
+            for (Map.Entry<UUID, List<Ubicacion>> trayecto : porTrayecto.entrySet()) {
+                Map<UUID, List<Ubicacion>> solo = Map.of(trayecto.getKey(), trayecto.getValue());
+                try {
+                    contarNoActivos(trayectosService.registrarUbicacionesEncoladas(solo), solo);
+                } catch (Exception falla) {
+                    descartadas.increment(trayecto.getValue().size());
+                }
+            }
+        }
+    }
+
+    // las ubicaciones de un trayecto finalizado después de aceptarlas no se escribieron
+    private void contarNoActivos(TrayectosService.LoteEncolado escrito, Map<UUID, List<Ubicacion>> porTrayecto) {
+        for (UUID trayectoId : escrito.trayectosNoActivos()) {
+            descartadas.increment(porTrayecto.get(trayectoId).size());
+        }
+    }
+
+    // una ubicación pendiente del trayecto ya se escribió o no se encoló; se llama
+    // con el candado tomado
+    private void liberar(UUID trayectoId) {
+        pendientes.computeIfPresent(trayectoId, (id, n) -> n > 1 ? n - 1 : null);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.bicicletas.trayectos.logica;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.modelo.FiltroUbicaciones;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Métricas de los casos de uso de trayectos, expuestas en /actuator/prometheus.
+// La latencia de cada caso de uso se mide con @Timed en TrayectosService
+// (métrica trayectos.casos.uso, con el caso de uso en la etiqueta "caso")
+@Component
+public class MetricasTrayectos {
+
+    public static final String CASOS_USO = "trayectos.casos.uso";
+
+    public static final String RECHAZOS = "trayectos.rechazos";
+
+    // motivos de rechazo (etiqueta "motivo" de trayectos.rechazos)
+    public static final String TRAYECTO_ACTIVO_DUPLICADO = "trayecto_activo_duplicado";
+    public static final String TRAYECTO_NO_ACTIVO = "trayecto_no_activo";
+    public static final String TRAYECTO_NO_EXISTE = "trayecto_no_existe";
+    public static final String COLA_UBICACIONES_LLENA = "cola_ubicaciones_llena";
+    public static final String CONFLICTO_CONCURRENCIA = "conflicto_concurrencia";
+    public static final String UBICACION_FUERA_DE_ORDEN = "ubicacion_fuera_de_orden";
+    public static final String UBICACION_FUTURA = "ubicacion_futura";
+
+    @Autowired
+    MeterRegistry registro;
+
+    @Autowired
+    TrayectosRepository trayectos;
+
+    private DistributionSummary ubicacionesPorTrayecto;
+
+    private DistributionSummary distanciaPorTrayecto;
+
+    @PostConstruct
+    void registrar() {
+        // se consulta al leer la métrica, así que refleja los trayectos de todas las instancias
+        Gauge.builder("trayectos.activos", trayectos, TrayectosRepository::countByPropietarioActivoIsNotNull)
+            .description("Trayectos en proceso")
+            .register(registro);
+
+        ubicacionesPorTrayecto = DistributionSummary.builder("trayectos.ubicaciones")
+            .description("Ubicaciones por trayecto finalizado")
+            .publishPercentileHistogram()
+            .register(registro);
+
+        distanciaPorTrayecto = DistributionSummary.builder("trayectos.distancia")
+            .description("Distancia por trayecto finalizado")
+            .baseUnit("km")
+            .publishPercentileHistogram()
+            .register(registro);
+    }
+
+    // cuenta una operación rechazada por una regla de negocio
+    public void rechazo(String motivo) {
+        Counter.builder(RECHAZOS)
+            .description("Operaciones rechazadas por una regla de negocio")
+            .tag("motivo", motivo)
+            .register(registro)
+            .increment();
+    }
+
+    // cuenta una operación repetida porque otra cambió el mismo trayecto al mismo tiempo
+    public void reintento() {
+        Counter.builder("trayectos.reintentos")
+            .description("Operaciones repetidas por un conflicto de bloqueo optimista")
+            .register(registro)
+            .increment();
+    }
+
+    // cuenta ubicaciones descartadas por el filtro de ingesta (ver FiltroUbicaciones)
+    public void ubicacionesDescartadas(FiltroUbicaciones.Resultado motivo, int cantidad) {
+        Counter.builder("trayectos.ubicaciones.descartadas")
+            .description("Ubicaciones descartadas al registrarlas por duplicadas o imposibles")
+            .tag("motivo", motivo.name().toLowerCase())
+            .register(registro)
+            .increment(cantidad);
+    }
+
+    public void trayectoFinalizado(int numeroUbicaciones, double distanciaTotal) {
+        ubicacionesPorTrayecto.record(numeroUbicaciones);
+        distanciaPorTrayecto.record(distanciaTotal);
+    }
+
+}
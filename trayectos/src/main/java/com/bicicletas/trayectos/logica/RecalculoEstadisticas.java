@@ -0,0 +1,228 @@
+package com.bicicletas.trayectos.logica;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.bicicletas.trayectos.dataAccess.RecalculosRepository;
+import com.bicicletas.trayectos.dataAccess.RecalculosRepository.PuntoControl;
+import com.bicicletas.trayectos.dataAccess.RecalculosRepository.TrayectoGuardado;
+import com.bicicletas.trayectos.modelo.CalculadoraDistancias;
+import com.bicicletas.trayectos.modelo.CodificadorRecorrido;
+import com.bicicletas.trayectos.modelo.EstadisticasTrayecto;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Recálculo de las estadísticas (distancia, número de ubicaciones, duración,
+// velocidad, última ubicación y caja) de todos los trayectos finalizados a partir
+// de sus ubicaciones, por ejemplo después de corregir el cálculo de la distancia.
+//
+// Recorre los trayectos en orden de id en lotes de trayectos.recalculo.tamano-lote;
+// cada lote se lee, calcula y escribe (un solo batch de update) en su propia
+// transacción en un ForkJoinPool de trayectos.recalculo.paralelismo hilos, con a lo
+// más el doble de lotes pendientes. También corrige los resúmenes diarios con la
+// diferencia de duración y distancia, y codifica el recorrido de los trayectos que
+// no lo tenían. Los trayectos sin filas de ubicacion cuyo recorrido codificado
+// está simplificado (ver Trayecto.recorridoSimplificado) conservan sus estadísticas.
+//
+// El avance se guarda con un nombre en punto_control_recalculo: el último id del
+// último lote confirmado tal que todos los anteriores también lo están. Si el
+// recálculo se detiene continúa desde ahí; los lotes confirmados después del punto
+// de control se vuelven a calcular, lo que no cambia nada porque el recálculo de un
+// trayecto con sus estadísticas ya corregidas da diferencia cero
+@Component
+public class RecalculoEstadisticas {
+
+    @Autowired
+    RecalculosRepository recalculos;
+
+    @Autowired
+    TransactionTemplate transaccion;
+
+    @Autowired
+    CacheTrayectos cache;
+
+    @Autowired
+    MeterRegistry registro;
+
+    @Value("${trayectos.recalculo.paralelismo:4}")
+    int paralelismo;
+
+    @Value("${trayectos.recalculo.tamano-lote:500}")
+    int tamanoLote;
+
+    @Value("${trayectos.recalculo.metodo-distancia:HAVERSINE}")
+    CalculadoraDistancias.Metodo metodo;
+
+    // avance del último recálculo ejecutado (o en ejecución) en esta instancia
+    public record Progreso(String nombre, boolean enEjecucion, long procesados, UUID ultimoId, String error) {}
+
+    private record Lote(UUID ultimoId, int tamano, Future<?> resultado) {}
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean();
+
+    private final AtomicLong procesados = new AtomicLong();
+
+    private volatile Progreso progreso;
+
+    @PostConstruct
+    void registrar() {
+        Gauge.builder("trayectos.recalculo.procesados", procesados, AtomicLong::get)
+            .description("Trayectos recalculados por el recálculo en ejecución")
+            .register(registro);
+    }
+
+    public Progreso consultarProgreso() {
+        return progreso;
+    }
+
+    // Ejecuta el recálculo en un hilo aparte; retorna false si ya hay uno en ejecución
+    public boolean iniciar(String nombre, boolean desdeInicio) {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofPlatform()
+            .name("recalculo-estadisticas")
+            .start(() -> {
+                try {
+                    recalcular(nombre, desdeInicio);
+                } catch (Exception e) {
+                    // el error queda en el progreso
+                }
+            });
+        return true;
+    }
+
+    // Ejecuta el recálculo y espera a que termine
+    public Progreso ejecutar(String nombre, boolean desdeInicio)
+        throws Exception
+    {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            throw new Exception("Ya hay un recálculo de estadísticas en ejecución");
+        }
+        recalcular(nombre, desdeInicio);
+        return progreso;
+    }
+
+    private void recalcular(String nombre, boolean desdeInicio)
+        throws Exception
+    {
+        UUID desde = null;
+        long total = 0;
+        if (desdeInicio) {
+            recalculos.borrarPuntoControl(nombre);
+        } else {
+            PuntoControl punto = recalculos.findPuntoControl(nombre).orElse(null);
+            if (punto != null) {
+                desde = punto.ultimoId();
+                total = punto.procesados();
+            }
+        }
+        procesados.set(total);
+        progreso = new Progreso(nombre, true, total, desde, null);
+
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        Deque<Lote> pendientes = new ArrayDeque<>();
+        UUID ultimoConfirmado = desde;
+        try {
+            boolean hayMas = true;
+            while (true) {
+                // lee ids mientras haya espacio para más lotes pendientes
+                while (hayMas && pendientes.size() < paralelismo * 2) {
+                    List<UUID> ids = recalculos.findIdsFinalizadosDespuesDe(desde, tamanoLote);
+                    if (!ids.isEmpty()) {
+                        desde = ids.get(ids.size() - 1);
+                        pendientes.add(new Lote(desde, ids.size(), pool.submit(() -> recalcularLote(ids))));
+                    }
+                    hayMas = ids.size() == tamanoLote;
+                }
+                if (pendientes.isEmpty()) {
+                    break;
+                }
+
+                // los lotes se confirman en cualquier orden, pero el punto de control
+                // avanza en orden
+                Lote lote = pendientes.poll();
+                try {
+                    lote.resultado().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception causa ? causa : e;
+                }
+                total += lote.tamano();
+                ultimoConfirmado = lote.ultimoId();
+                recalculos.guardarPuntoControl(nombre, ultimoConfirmado, total);
+                procesados.set(total);
+                progreso = new Progreso(nombre, true, total, ultimoConfirmado, null);
+            }
+            progreso = new Progreso(nombre, false, total, ultimoConfirmado, null);
+
+        } catch (Exception e) {
+            progreso = new Progreso(nombre, false, total, ultimoConfirmado, e.getMessage());
+            throw e;
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            enEjecucion.set(false);
+        }
+    }
+
+    private void recalcularLote(List<UUID> ids) {
+        transaccion.executeWithoutResult(estado -> {
+            List<UUID> actualizados = new ArrayList<>(ids.size());
+            List<EstadisticasTrayecto> estadisticas = new ArrayList<>(ids.size());
+            List<byte[]> recorridos = new ArrayList<>(ids.size());
+            Map<LocalDate, Map<String, double[]>> diferencias = new HashMap<>();
+            Map<UUID, Long> versiones = new HashMap<>();
+
+            for (TrayectoGuardado trayecto : recalculos.findByIdIn(ids)) {
+                // sin recorrido (por ejemplo, uno simplificado sin filas) se conservan
+                if (trayecto.fechaHoraFin() == null || trayecto.recorrido().getTamano() == 0) {
+                    continue;
+                }
+                EstadisticasTrayecto calculadas = EstadisticasTrayecto.calcular(
+                    trayecto.fechaHoraInicio(), trayecto.fechaHoraFin(), trayecto.recorrido(), metodo);
+
+                actualizados.add(trayecto.id());
+                estadisticas.add(calculadas);
+                // actualizarEstadisticas aumenta la versión
+                versiones.put(trayecto.id(), trayecto.version() + 1);
+                recorridos.add(trayecto.codificado() ? null : CodificadorRecorrido.codificar(trayecto.recorrido()));
+
+                // el trayecto se sumó al resumen del día en que se inició (CU003)
+                double diferenciaDuracion = calculadas.duracion() - trayecto.duracion();
+                double diferenciaDistancia = calculadas.distanciaTotal() - trayecto.distanciaTotal();
+                if (diferenciaDuracion != 0 || diferenciaDistancia != 0) {
+                    String propietario = trayecto.propietario() != null ? trayecto.propietario() : TrayectosService.PROPIETARIO_POR_DEFECTO;
+                    double[] diferencia = diferencias
+                        .computeIfAbsent(trayecto.fechaHoraInicio().toLocalDate(), dia -> new HashMap<>())
+                        .computeIfAbsent(propietario, p -> new double[2]);
+                    diferencia[0] += diferenciaDuracion;
+                    diferencia[1] += diferenciaDistancia;
+                }
+            }
+
+            recalculos.actualizarEstadisticas(actualizados, estadisticas, recorridos);
+            recalculos.ajustarResumenesDiarios(diferencias);
+            cache.invalidarAlConfirmar(versiones);
+        });
+    }
+
+}
@@ -1,17 +1,59 @@
 package com.bicicletas.trayectos.logica;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.UUID;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.bicicletas.trayectos.dataAccess.AreasRepository;
+import com.bicicletas.trayectos.dataAccess.RecorridosRepository;
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
 import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
 import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.Area;
+import com.bicicletas.trayectos.modelo.CeldaEspacial;
+import com.bicicletas.trayectos.modelo.CodificadorRecorrido;
+import com.bicicletas.trayectos.modelo.EstadoTrayecto;
+import com.bicicletas.trayectos.modelo.FiltroUbicaciones;
+import com.bicicletas.trayectos.modelo.PaginaTrayectos;
+import com.bicicletas.trayectos.modelo.Recorrido;
+import com.bicicletas.trayectos.modelo.ResumenTrayecto;
+import com.bicicletas.trayectos.modelo.SimplificadorRecorrido;
+import com.bicicletas.trayectos.modelo.TotalesTrayectos;
 import com.bicicletas.trayectos.modelo.Trayecto;
 import com.bicicletas.trayectos.modelo.Ubicacion;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import jakarta.transaction.Transactional.TxType;
 
@@ -26,16 +68,104 @@ public class TrayectosService {
     @Autowired
     UbicacionesRepository ubicaciones;
 
-    // CU001 Iniciar Trayecto
-    // 1. Actor ingresa la ubicación actual
+    @Autowired
+    RecorridosRepository recorridos;
+
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Autowired
+    AreasRepository areas;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    MetricasTrayectos metricas;
+
+    @Autowired
+    CacheTrayectos cache;
+
+    @Autowired
+    TransactionTemplate transaccion;
+
+    // propietario de los trayectos iniciados sin indicar bicicleta o deportista
+    public static final String PROPIETARIO_POR_DEFECTO = "sin-propietario";
+
+    // tamaño máximo de una página del listado de trayectos
+    @Value("${trayectos.pagina.tamano-maximo:100}")
+    int tamanoMaximoPagina;
+
+    // si es false, al finalizar un trayecto se borran sus filas de ubicacion y
+    // queda solo el recorrido codificado
+    @Value("${trayectos.recorrido.conservar-ubicaciones:true}")
+    boolean conservarUbicaciones;
+
+    // si es mayor que cero, al finalizar un trayecto su recorrido se codifica
+    // simplificado con esta tolerancia en metros (ver SimplificadorRecorrido); la
+    // distancia y el número de ubicaciones del trayecto siguen siendo los de todas
+    @Value("${trayectos.recorrido.tolerancia-metros:0}")
+    double toleranciaMetros;
+
+    // diferencia relativa máxima entre la distancia del recorrido simplificado y la original
+    @Value("${trayectos.recorrido.error-distancia-maximo:0.01}")
+    double errorDistanciaMaximo;
+
+    // máximo de ubicaciones que se aceptan en un lote de CU002
+    @Value("${trayectos.ubicaciones.lote-maximo:1000}")
+    int loteMaximo;
+
+    // lado máximo (en grados de latitud o longitud) del área de una búsqueda por
+    // área, y máximo de trayectos que retorna (ver consultarTrayectosEnArea)
+    @Value("${trayectos.area.lado-maximo-grados:1}")
+    double ladoMaximoArea;
+
+    @Value("${trayectos.area.resultados-maximos:1000}")
+    int resultadosMaximosArea;
+
+    // si es true, CU002 descarta las ubicaciones duplicadas y los saltos imposibles
+    // (ver FiltroUbicaciones); la ubicación inicial y la final siempre se registran
+    @Value("${trayectos.filtro.habilitado:false}")
+    boolean filtrarUbicaciones;
+
+    @Value("${trayectos.filtro.distancia-minima-metros:5}")
+    double distanciaMinimaMetros;
+
+    @Value("${trayectos.filtro.velocidad-maxima-kmh:80}")
+    double velocidadMaximaKmh;
+
+    // si es true, los totales de CU005 suman los resúmenes diarios de los días
+    // completos del rango y solo leen trayectos en los bordes
+    @Value("${trayectos.resumen.usar-resumenes-diarios:true}")
+    boolean usarResumenesDiarios;
+
+    // veces que se intenta una operación que choca con otra sobre el mismo trayecto
+    @Value("${trayectos.concurrencia.intentos:10}")
+    int intentos;
+
+    // CU001 Iniciar Trayecto (sin propietario)
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU001" }, histogram = true)
     @Transactional(value = TxType.REQUIRED)
     public UUID iniciarTrayecto(Double longitud, Double latitud) 
         throws Exception
     {
+        return iniciarTrayecto(PROPIETARIO_POR_DEFECTO, longitud, latitud);
+    }
+
+    // CU001 Iniciar Trayecto
+    // 1. Actor ingresa la bicicleta o deportista y la ubicación actual
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU001" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public UUID iniciarTrayecto(String propietario, Double longitud, Double latitud) 
+        throws Exception
+    {
+        if (propietario == null || propietario.isBlank()) {
+            throw new Exception("Debe indicar la bicicleta o deportista del trayecto");
+        }
 
-        // 2. Verifica que no exista otro trayecto activo
-        Trayecto trayectoActivo = trayectos.findByEnProcesoTrue();
-        if (trayectoActivo != null) {
+        // 2. Verifica que el propietario no tenga otro trayecto activo
+        if (trayectos.existsByPropietarioActivo(propietario)) {
+            metricas.rechazo(MetricasTrayectos.TRAYECTO_ACTIVO_DUPLICADO);
             throw new Exception("No se puede iniciar otro trayecto mientras se tiene un trayecto activo");
         }
 
@@ -47,7 +177,22 @@ public class TrayectosService {
         Trayecto trayecto = new Trayecto();
         trayecto.setFechaHoraInicio(fechaActual);
         trayecto.setEnProceso(true);
-        trayecto = trayectos.save(trayecto);
+        trayecto.setPropietario(propietario);
+        trayecto.setPropietarioActivo(propietario);
+
+        // si otro trayecto del mismo propietario se inició al mismo tiempo, la
+        // restricción única de propietarioActivo falla aquí y se revierte todo
+        try {
+            trayecto = trayectos.saveAndFlush(trayecto);
+        } catch (DataIntegrityViolationException e) {
+            metricas.rechazo(MetricasTrayectos.TRAYECTO_ACTIVO_DUPLICADO);
+            throw e;
+        }
+
+        // cuenta el trayecto en el resumen del día y propietario
+        if (resumenesDiarios.sumarTrayecto(fechaActual.toLocalDate(), propietario) == 0) {
+            resumenesDiarios.insertar(fechaActual.toLocalDate(), propietario, 1, 0, 0.0);
+        }
 
         // 6. Agrega una ubicación con la longitud y latitud de ubicación inicial a la trayectoria
         Ubicacion ubicacion = new Ubicacion();
@@ -58,7 +203,7 @@ public class TrayectosService {
         ubicacion = ubicaciones.save(ubicacion);
 
         trayecto.getUbicaciones().add(ubicacion);
-        trayecto = trayectos.save(trayecto);
+        trayecto.acumularUbicacion(ubicacion);
 
         // 7. Retorna el id del nuevo trayecto |
         return trayecto.getId();
@@ -66,82 +211,388 @@ public class TrayectosService {
     }
 
     // CU002 Registrar Ubicación
-    @Transactional(value = TxType.REQUIRED)
+    // No se carga el trayecto: se leen sus valores acumulados, se les suma la
+    // ubicación nueva y se escriben con un solo update condicionado a que el
+    // trayecto siga activo y sin cambios, y la ubicación se inserta con la llave
+    // foránea. Registrar la ubicación número 5.000 cuesta lo mismo que la primera
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU002" }, histogram = true)
     public void registrarUbicacion(UUID trayectoId, Double longitud, Double latitud) 
         throws Exception
     {
-        // 2. Verifica que exista un trayecto con ese id
-        Trayecto trayecto = trayectos.findById(trayectoId)
-            .orElseThrow(() -> new Exception("No existe un trayecto con ese id"));
+        Map<FiltroUbicaciones.Resultado, Integer> descartadas = new EnumMap<>(FiltroUbicaciones.Resultado.class);
+        conReintentos(() -> {
+            descartadas.clear();
+
+            // 2. Verifica que exista un trayecto con ese id
+            // 3. Verifica que el trayecto esté activo
+            Trayecto acumulado = acumuladoActivo(trayectoId);
+
+            // 5. Determina fecha y hora
+            LocalDateTime fechaActual = LocalDateTime.now();
+
+            // 6. Agrega una nueva ubicación con fecha y hora actual y la longitud y latitud
+            Ubicacion ubicacion = new Ubicacion();
+            ubicacion.setFechaHora(fechaActual);
+            ubicacion.setLongitud(longitud);
+            ubicacion.setLatitud(latitud);
+
+            // la ubicación duplicada o imposible no se guarda ni cambia el trayecto
+            if (!aceptar(acumulado, ubicacion, descartadas)) {
+                return null;
+            }
+            acumulado.acumularUbicacion(ubicacion);
+            guardarUbicaciones(acumulado, List.of(ubicacion));
+            return null;
+        });
+        descartadas.forEach(metricas::ubicacionesDescartadas);
+    }
+
+    // CU002 Registrar Ubicación (en lote)
+    // Los dispositivos acumulan varias ubicaciones y las envían juntas, cada una
+    // con la fecha y hora en que fue tomada. El trayecto se valida una sola vez
+    // y las ubicaciones se insertan en lote (ver hibernate.jdbc.batch_size).
+    // Las ubicaciones se acumulan a partir de la última registrada, así que el lote
+    // completo se rechaza si alguna es anterior a ella o posterior a la fecha actual
+    // (el recorrido al finalizar las ordena por fecha y hora y no coincidiría con
+    // la distancia y la caja acumuladas)
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU002-lote" }, histogram = true)
+    public int registrarUbicaciones(UUID trayectoId, List<Ubicacion> nuevasUbicaciones) 
+        throws Exception
+    {
+        Map<FiltroUbicaciones.Resultado, Integer> descartadas = new EnumMap<>(FiltroUbicaciones.Resultado.class);
+        int registradas = conReintentos(() -> {
+            descartadas.clear();
+
+            // 1. Verifica que se hayan recibido ubicaciones
+            if (nuevasUbicaciones == null || nuevasUbicaciones.isEmpty()) {
+                throw new Exception("No se recibieron ubicaciones para registrar");
+            }
+
+            // 4. Verifica que el lote no supere el máximo de ubicaciones
+            if (nuevasUbicaciones.size() > loteMaximo) {
+                throw new Exception("No se pueden registrar más de " + loteMaximo + " ubicaciones en un lote");
+            }
+
+            // 2. Verifica que exista un trayecto con ese id
+            // 3. Verifica que el trayecto esté activo
+            Trayecto acumulado = acumuladoActivo(trayectoId);
+
+            // 5. Las ubicaciones sin fecha y hora del dispositivo toman la actual
+            LocalDateTime fechaActual = LocalDateTime.now();
+
+            // 6. Crea las nuevas ubicaciones ordenadas por fecha y hora
+            List<Ubicacion> lote = new ArrayList<>(nuevasUbicaciones.size());
+            for (Ubicacion recibida : nuevasUbicaciones) {
+                if (recibida.getLongitud() == null || recibida.getLatitud() == null) {
+                    throw new Exception("Todas las ubicaciones deben tener longitud y latitud");
+                }
+
+                Ubicacion ubicacion = new Ubicacion();
+                ubicacion.setFechaHora(recibida.getFechaHora() != null ? recibida.getFechaHora() : fechaActual);
+                ubicacion.setLongitud(recibida.getLongitud());
+                ubicacion.setLatitud(recibida.getLatitud());
+                lote.add(ubicacion);
+            }
+            lote.sort(Comparator.comparing(Ubicacion::getFechaHora));
+
+            // 7. Verifica que las ubicaciones sean posteriores a la última registrada
+            // (o al inicio del trayecto) y que ninguna esté en el futuro
+            LocalDateTime desde = acumulado.getUltimaFechaHora() != null
+                ? acumulado.getUltimaFechaHora() : acumulado.getFechaHoraInicio();
+            if (desde != null && lote.get(0).getFechaHora().isBefore(desde)) {
+                metricas.rechazo(MetricasTrayectos.UBICACION_FUERA_DE_ORDEN);
+                throw new Exception("Las ubicaciones no pueden ser anteriores a la última ubicación registrada del trayecto");
+            }
+            if (lote.get(lote.size() - 1).getFechaHora().isAfter(fechaActual)) {
+                metricas.rechazo(MetricasTrayectos.UBICACION_FUTURA);
+                throw new Exception("Las ubicaciones no pueden tener una fecha y hora futura");
+            }
+
+            // 8. Descarta las duplicadas e imposibles; cada una se compara con la
+            // anterior aceptada, así que se acumulan en el trayecto a medida que se revisan
+            List<Ubicacion> aceptadas = new ArrayList<>(lote.size());
+            for (Ubicacion ubicacion : lote) {
+                if (aceptar(acumulado, ubicacion, descartadas)) {
+                    acumulado.acumularUbicacion(ubicacion);
+                    aceptadas.add(ubicacion);
+                }
+            }
+            guardarUbicaciones(acumulado, aceptadas);
+
+            return aceptadas.size();
+        });
+        descartadas.forEach(metricas::ubicacionesDescartadas);
+        return registradas;
+    }
+
+    // CU002 Registrar Ubicación (desde la cola de ingesta)
+    // Escribe en una sola transacción un lote de ubicaciones ya aceptadas por la API
+    // (ver ColaUbicaciones), de uno o varios trayectos. Las ubicaciones de un
+    // trayecto que ya no está activo se descartan sin afectar las de los demás.
+    // Retorna el número de ubicaciones registradas y los trayectos no activos, para
+    // que la cola cuente sus ubicaciones como descartadas
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU002-cola" }, histogram = true)
+    public LoteEncolado registrarUbicacionesEncoladas(Map<UUID, List<Ubicacion>> ubicacionesPorTrayecto) 
+        throws Exception
+    {
+        Map<FiltroUbicaciones.Resultado, Integer> descartadas = new EnumMap<>(FiltroUbicaciones.Resultado.class);
+        LoteEncolado escrito = conReintentos(() -> {
+            descartadas.clear();
+            int registradasLote = 0;
+            Set<UUID> noActivos = new HashSet<>();
+            for (Map.Entry<UUID, List<Ubicacion>> entrada : ubicacionesPorTrayecto.entrySet()) {
+                Trayecto acumulado = trayectos.findAcumuladoById(entrada.getKey()).orElse(null);
+                if (acumulado == null || !acumulado.isEnProceso()) {
+                    metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_ACTIVO);
+                    noActivos.add(entrada.getKey());
+                    continue;
+                }
+
+                // se guardan copias: si la transacción se revierte, las recibidas se
+                // pueden volver a escribir (ver ColaUbicaciones)
+                List<Ubicacion> lote = new ArrayList<>(entrada.getValue().size());
+                for (Ubicacion recibida : entrada.getValue()) {
+                    Ubicacion ubicacion = new Ubicacion();
+                    ubicacion.setFechaHora(recibida.getFechaHora());
+                    ubicacion.setLongitud(recibida.getLongitud());
+                    ubicacion.setLatitud(recibida.getLatitud());
+                    lote.add(ubicacion);
+                }
+                lote.sort(Comparator.comparing(Ubicacion::getFechaHora));
+                List<Ubicacion> aceptadas = new ArrayList<>(lote.size());
+                for (Ubicacion ubicacion : lote) {
+                    if (aceptar(acumulado, ubicacion, descartadas)) {
+                        acumulado.acumularUbicacion(ubicacion);
+                        aceptadas.add(ubicacion);
+                    }
+                }
+                guardarUbicaciones(acumulado, aceptadas);
+                registradasLote += aceptadas.size();
+            }
+            return new LoteEncolado(registradasLote, noActivos);
+        });
+        descartadas.forEach(metricas::ubicacionesDescartadas);
+        return escrito;
+    }
+
+    // resultado de registrarUbicacionesEncoladas
+    public record LoteEncolado(int registradas, Set<UUID> trayectosNoActivos) {}
+
+    // Verifica que el trayecto exista y esté activo y retorna su estado acumulado
+    // (ver TrayectosRepository.findAcumuladoById), sin cargar la entidad
+    private Trayecto acumuladoActivo(UUID trayectoId) 
+        throws Exception
+    {
+        Trayecto trayecto = trayectos.findAcumuladoById(trayectoId).orElse(null);
+        if (trayecto == null) {
+            metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_EXISTE);
+            throw new Exception("No existe un trayecto con ese id");
+        }
 
-        // 3. Verifica que el trayecto esté activo
         if (!trayecto.isEnProceso()) {
+            metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_ACTIVO);
             throw new Exception("El trayecto no está activo");
         }
 
-        // 5. Determina fecha y hora
-        LocalDateTime fechaActual = LocalDateTime.now();
+        return trayecto;
+    }
 
-        // 6. Agrega una nueva ubicación con fecha y hora actual y la longitud y latitud
-        Ubicacion ubicacion = new Ubicacion();
-        ubicacion.setFechaHora(fechaActual);
-        ubicacion.setLongitud(longitud);
-        ubicacion.setLatitud(latitud);
-        ubicacion.setTrayecto(trayecto);
-        ubicacion = ubicaciones.save(ubicacion);
+    // Escribe el estado acumulado con las ubicaciones nuevas e inserta las
+    // ubicaciones. Si el trayecto se finalizó o lo cambió otra operación desde que
+    // se leyó, el update no cambia ninguna fila y la operación se repite desde el
+    // principio (ver conReintentos), así que no se pierde ninguna suma
+    private void guardarUbicaciones(Trayecto acumulado, List<Ubicacion> nuevas) {
+        if (trayectos.guardarAcumulado(acumulado) == 0) {
+            throw new OptimisticLockException("El trayecto cambió después de leer su estado acumulado");
+        }
 
-        trayecto.getUbicaciones().add(ubicacion);
-        trayectos.save(trayecto);
+        // los ids se generan en memoria, así que los insert se agrupan en un solo lote
+        // al hacer flush
+        Trayecto referencia = trayectos.getReferenceById(acumulado.getId());
+        for (Ubicacion ubicacion : nuevas) {
+            ubicacion.setTrayecto(referencia);
+        }
+        ubicaciones.saveAll(nuevas);
+
+        // si el trayecto ya está cargado en la sesión (dentro de una transacción
+        // mayor) se vuelve a leer con lo que se acaba de escribir
+        if (Hibernate.isInitialized(referencia)) {
+            entityManager.flush();
+            entityManager.refresh(referencia);
+        }
     }
 
-    // CU003 Finalizar Trayecto
-    @Transactional(value = TxType.REQUIRED)
-    public void finalizarTrayecto(UUID trayectoId, Double longitud, Double latitud) 
+    // Aplica el filtro de ingesta (si está habilitado) a una ubicación nueva del
+    // trayecto; con o sin filtro se descarta la que es anterior a la última
+    // aceptada. Las descartadas se cuentan por motivo en `descartadas`
+    private boolean aceptar(Trayecto trayecto, Ubicacion ubicacion, Map<FiltroUbicaciones.Resultado, Integer> descartadas) {
+        FiltroUbicaciones.Resultado resultado;
+        if (filtrarUbicaciones) {
+            resultado = FiltroUbicaciones.evaluar(trayecto, ubicacion, distanciaMinimaMetros, velocidadMaximaKmh);
+        } else {
+            resultado = FiltroUbicaciones.fueraDeOrden(trayecto, ubicacion)
+                ? FiltroUbicaciones.Resultado.FUERA_DE_ORDEN : FiltroUbicaciones.Resultado.ACEPTADA;
+        }
+        if (resultado == FiltroUbicaciones.Resultado.ACEPTADA) {
+            return true;
+        }
+        descartadas.merge(resultado, 1, Integer::sum);
+        return false;
+    }
+
+    // Ejecuta la operación en su propia transacción. Si otra transacción cambió el
+    // mismo trayecto al mismo tiempo (bloqueo optimista, ver Trayecto.version), la
+    // operación se repite desde el principio con los datos ya confirmados, hasta
+    // trayectos.concurrencia.intentos veces y con una espera aleatoria creciente
+    // (también si se agotó la espera de un bloqueo). Solo la finalización bloquea la
+    // fila del trayecto, así que las ubicaciones de trayectos distintos no esperan
+    // unas a otras. Dentro de una transacción mayor no se repite: la falla revierte
+    // la transacción completa
+    private <T> T conReintentos(Operacion<T> operacion) 
         throws Exception
     {
-        // 2. Verifica que exista un trayecto con ese id
-        Trayecto trayecto = trayectos.findById(trayectoId)
-            .orElseThrow(() -> new Exception("No se existe el trayecto al que se desea agregar la ubicación"));
-
-        // 3. Verifica que el trayecto esté activo
-        if (!trayecto.isEnProceso()) {
-            throw new Exception("No se puede agregar una ubicación a un trayecto no activo");
+        boolean reintentable = !TransactionSynchronizationManager.isActualTransactionActive();
+        for (int intento = 1; ; intento++) {
+            try {
+                return transaccion.execute(estado -> {
+                    try {
+                        return operacion.ejecutar();
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new FallaOperacion(e);
+                    }
+                });
+            } catch (FallaOperacion e) {
+                throw (Exception) e.getCause();
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                if (!reintentable || intento >= intentos) {
+                    metricas.rechazo(MetricasTrayectos.CONFLICTO_CONCURRENCIA);
+                    throw new Exception("El trayecto fue modificado por otra operación al mismo tiempo, intente de nuevo", e);
+                }
+                metricas.reintento();
+                Thread.sleep(ThreadLocalRandom.current().nextLong(1, 2L << Math.min(intento, 6)));
+            }
         }
+    }
 
-        // 5. Determina fecha y hora actual
-        LocalDateTime fechaActual = LocalDateTime.now();
-
-        //No se usa registrarUbicacion porque no se quiere agregar la ubicación al trayecto
-        // 6. Agrega una nueva ubicación con fecha y hora actual y la longitud y latitud
-        Ubicacion ubicacion = new Ubicacion();
-        ubicacion.setFechaHora(fechaActual);
-        ubicacion.setLongitud(longitud);
-        ubicacion.setLatitud(latitud);
-        ubicacion.setTrayecto(trayecto);
-        ubicacion = ubicaciones.save(ubicacion);
-
-        trayecto.getUbicaciones().add(ubicacion);
+    // operación de un caso de uso que se ejecuta dentro de conReintentos
+    @FunctionalInterface
+    private interface Operacion<T> {
+        T ejecutar() throws Exception;
+    }
 
-        // 7. Calcula la duración del trayecto
-        long duracionEnSegundos = java.time.Duration.between(
-            trayecto.getFechaHoraInicio(), 
-            fechaActual
-        ).getSeconds();
+    // lleva una excepción del caso de uso fuera de la transacción, que se revierte
+    private static class FallaOperacion extends RuntimeException {
+        FallaOperacion(Exception causa) {
+            super(causa);
+        }
+    }
 
-        // 8. Actualiza el trayecto con hora final, duración y estado inactivo
-        trayecto.setFechaHoraFin(fechaActual);
-        trayecto.setDuracion(duracionEnSegundos);
-        trayecto.setEnProceso(false);
-        
-        trayectos.save(trayecto);
+    // CU003 Finalizar Trayecto
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU003" }, histogram = true)
+    public void finalizarTrayecto(UUID trayectoId, Double longitud, Double latitud) 
+        throws Exception
+    {
+        Trayecto finalizado = conReintentos(() -> {
+            // 2. Verifica que exista un trayecto con ese id
+            // la fila queda bloqueada: con solo bloqueo optimista cada ubicación
+            // registrada mientras tanto cambia la versión y la finalización, que tarda
+            // más, podía perder todos sus intentos contra ellas
+            Trayecto trayecto = trayectos.findBloqueadoById(trayectoId).orElse(null);
+            if (trayecto == null) {
+                metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_EXISTE);
+                throw new Exception("No se existe el trayecto al que se desea agregar la ubicación");
+            }
+
+            // 3. Verifica que el trayecto esté activo
+            if (!trayecto.isEnProceso()) {
+                metricas.rechazo(MetricasTrayectos.TRAYECTO_NO_ACTIVO);
+                throw new Exception("No se puede agregar una ubicación a un trayecto no activo");
+            }
+
+            // 5. Determina fecha y hora actual
+            LocalDateTime fechaActual = LocalDateTime.now();
+
+            // 7. Calcula la duración del trayecto
+            long duracionEnSegundos = java.time.Duration.between(
+                trayecto.getFechaHoraInicio(), 
+                fechaActual
+            ).getSeconds();
+
+            // 8. Actualiza el trayecto con hora final, duración y estado inactivo
+            trayecto.setFechaHoraFin(fechaActual);
+            trayecto.setDuracion(duracionEnSegundos);
+            trayecto.setEnProceso(false);
+            trayecto.setPropietarioActivo(null);
+
+            //No se usa registrarUbicacion porque no se quiere agregar la ubicación al trayecto
+            // 6. Agrega una nueva ubicación con fecha y hora actual y la longitud y latitud
+            Ubicacion ubicacion = new Ubicacion();
+            ubicacion.setFechaHora(fechaActual);
+            ubicacion.setLongitud(longitud);
+            ubicacion.setLatitud(latitud);
+            ubicacion.setTrayecto(trayecto);
+            ubicacion = ubicaciones.save(ubicacion);
+
+            // el flush escribe la ubicación final y que el trayecto ya no está activo
+            // antes de leer el recorrido; con la fila bloqueada ninguna ubicación nueva
+            // del trayecto puede confirmarse, así que el recorrido leído es el final
+            entityManager.flush();
+            int capacidad = trayecto.getNumeroUbicaciones() != null ? trayecto.getNumeroUbicaciones() + 1 : 0;
+            Recorrido recorrido = recorridos.findByTrayectoId(trayectoId, capacidad);
+
+            trayecto.getUbicaciones().add(ubicacion);
+            trayecto.acumularUbicacion(ubicacion);
+
+            // La distancia y el número de ubicaciones ya están acumulados; un trayecto
+            // finalizado ya no cambia, así que las consultas no vuelven a recorrer sus
+            // ubicaciones. No se llama a save: el trayecto está administrado y un merge
+            // recorrería (e inicializaría) la lista de ubicaciones
+            double distanciaTotal = trayecto.getDistanciaTotal();
+            trayecto.setVelocidadPromedio(duracionEnSegundos > 0 ? distanciaTotal / (duracionEnSegundos / 3600.0) : 0.0);
+
+            // 9. Guarda todas las ubicaciones codificadas en la fila del trayecto: las
+            // consultas de un trayecto finalizado leen una fila en lugar de una por ubicación
+            Recorrido simplificado = SimplificadorRecorrido.simplificar(recorrido, toleranciaMetros, errorDistanciaMaximo);
+            trayecto.setRecorridoCodificado(CodificadorRecorrido.codificar(simplificado));
+            trayecto.setRecorridoSimplificado(simplificado.getTamano() < recorrido.getTamano());
+
+            // 10. Suma la duración y la distancia al resumen del día en que se inició
+            LocalDate dia = trayecto.getFechaHoraInicio().toLocalDate();
+            String propietario = trayecto.getPropietario() != null ? trayecto.getPropietario() : PROPIETARIO_POR_DEFECTO;
+            if (resumenesDiarios.sumarFinalizado(dia, propietario, duracionEnSegundos, distanciaTotal) == 0) {
+                resumenesDiarios.insertar(dia, propietario, 1, duracionEnSegundos, distanciaTotal);
+            }
+
+            // el trayecto ya no cambia: se deja listo para CU004
+            cache.guardarAlConfirmar(trayecto);
+
+            if (!conservarUbicaciones) {
+                ubicaciones.deleteByTrayectoId(trayectoId);
+            }
+
+            return trayecto;
+        });
+
+        metricas.trayectoFinalizado(finalizado.getNumeroUbicaciones(), finalizado.getDistanciaTotal());
     }
 
     // CU004 Consultar Trayecto
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU004" }, histogram = true)
     @Transactional(value = TxType.REQUIRED)
     public String consultarTrayecto(UUID trayectoId) 
         throws Exception
     {
         // 2. Verifica que exista un trayecto con ese id
+        // un trayecto finalizado no cambia, así que se responde desde la caché si está
+        String enCache = cache.consultar(trayectoId);
+        if (enCache != null) {
+            return enCache;
+        }
+
+        // los trayectos finalizados tienen su recorrido codificado en la misma fila;
+        // las ubicaciones solo se leen para trayectos finalizados antes de que existiera
         Trayecto trayecto = trayectos.findById(trayectoId)
             .orElseThrow(() -> new Exception("No se existe el trayecto que se desea consultar"));
 
@@ -151,63 +602,326 @@ public class TrayectosService {
         }
         
         // 3. Retorna la información formateada usando el toString personalizado
-        return trayecto.toString();
+        String resultado = trayecto.toString();
+        cache.guardar(trayecto, resultado);
+        return resultado;
     }
 
-    // CU005 Consultar Resumen Trayectos
+    // Consultar recorrido de un trayecto (en curso o finalizado)
+    // Devuelve las ubicaciones en arreglos de tipos primitivos, leídas sin crear
+    // una entidad por ubicación; sirve para dibujar o procesar trayectos largos
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "recorrido" }, histogram = true)
     @Transactional(value = TxType.REQUIRED)
-    public String consultarResumenTrayectos(LocalDateTime fechaInicio, LocalDateTime fechaFin) 
+    public Recorrido consultarRecorrido(UUID trayectoId) 
         throws Exception
     {
-        // 2. Verifica que la fecha de inicio sea menor que la fecha final
-        if (fechaInicio.isAfter(fechaFin)) {
-            throw new Exception("La fecha de inicio debe ser menor a la fecha final");
-        }
-
-        // 3. Obtiene todos los trayectos en ese rango de fechas
-        List<Trayecto> trayectosEncontrados = trayectos.findEnRangoFechas(fechaInicio, fechaFin);
-
-        // 4. Formatea la información de todos los trayectos
-        StringBuilder resumen = new StringBuilder();
-        resumen.append("Resumen de Trayectos\n");
-        resumen.append("Período: ").append(fechaInicio).append(" a ").append(fechaFin).append("\n");
-        resumen.append("Total trayectos: ").append(trayectosEncontrados.size()).append("\n\n");
+        return consultarRecorrido(trayectoId, null);
+    }
 
-        // Para cada trayecto, usa el toString personalizado que ya implementamos
-        for (Trayecto t : trayectosEncontrados) {
-            resumen.append("----------------------------------------\n");
-            resumen.append(t.toString()).append("\n");
+    // Consultar recorrido simplificado con una tolerancia en metros (ver
+    // SimplificadorRecorrido); sin tolerancia retorna el recorrido guardado
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "recorrido" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public Recorrido consultarRecorrido(UUID trayectoId, Double toleranciaMetros) 
+        throws Exception
+    {
+        if (toleranciaMetros != null && toleranciaMetros < 0) {
+            throw new Exception("La tolerancia no puede ser negativa");
         }
-
-        return resumen.toString();
+        Recorrido recorrido = leerRecorrido(trayectoId);
+        if (toleranciaMetros == null) {
+            return recorrido;
+        }
+        return SimplificadorRecorrido.simplificar(recorrido, toleranciaMetros, errorDistanciaMaximo).recortar();
     }
-}
-
-
-
 
+    private Recorrido leerRecorrido(UUID trayectoId) 
+        throws Exception
+    {
+        Trayecto trayecto = trayectos.findById(trayectoId)
+            .orElseThrow(() -> new Exception("No existe un trayecto con ese id"));
 
+        if (trayecto.getRecorridoCodificado() != null) {
+            return CodificadorRecorrido.decodificar(trayecto.getRecorridoCodificado()).recortar();
+        }
 
+        // la consulta es por JDBC: primero se escriben las ubicaciones pendientes
+        // de esta transacción, que Hibernate no escribe por sí solo en ese caso
+        entityManager.flush();
 
+        int capacidad = trayecto.getNumeroUbicaciones() != null ? trayecto.getNumeroUbicaciones() : 0;
+        return recorridos.findByTrayectoId(trayectoId, capacidad);
+    }
 
+    // Consultar estado de un trayecto (en curso o finalizado)
+    // Lee solo la fila del trayecto: distancia acumulada, número de ubicaciones y
+    // última ubicación conocida
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "estado" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public EstadoTrayecto consultarEstadoTrayecto(UUID trayectoId) 
+        throws Exception
+    {
+        return trayectos.findEstadoById(trayectoId)
+            .orElseThrow(() -> new Exception("No existe un trayecto con ese id"));
+    }
 
+    // Trayectos que pasaron por una caja de coordenadas
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "area" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public List<ResumenTrayecto> consultarTrayectosEnCaja(
+        Double latitudMinima, Double latitudMaxima, Double longitudMinima, Double longitudMaxima) 
+        throws Exception
+    {
+        if (latitudMinima == null || latitudMaxima == null || longitudMinima == null || longitudMaxima == null) {
+            throw new Exception("Debe indicar las latitudes y longitudes mínimas y máximas");
+        }
+        if (latitudMinima > latitudMaxima || longitudMinima > longitudMaxima) {
+            throw new Exception("Las latitudes y longitudes mínimas no pueden ser mayores que las máximas");
+        }
+        return consultarTrayectosEnArea(Area.caja(latitudMinima, latitudMaxima, longitudMinima, longitudMaxima));
+    }
 
+    // Trayectos que pasaron a menos de `radio` kilómetros de un punto (una estación)
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "cercania" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public List<ResumenTrayecto> consultarTrayectosCercaDe(Double latitud, Double longitud, Double radio) 
+        throws Exception
+    {
+        if (latitud == null || longitud == null || radio == null) {
+            throw new Exception("Debe indicar la latitud, la longitud y el radio");
+        }
+        if (radio <= 0) {
+            throw new Exception("El radio debe ser mayor a cero");
+        }
+        return consultarTrayectosEnArea(Area.circulo(latitud, longitud, radio));
+    }
 
+    // Las celdas de la cuadrícula (ver CeldaEspacial) descartan en la base de datos
+    // las ubicaciones lejanas; solo las ubicaciones de las celdas que cubren el área
+    // se revisan con sus coordenadas exactas (Haversine en el caso del círculo). Los
+    // trayectos que ya no tienen filas de ubicacion se descartan con su caja y los
+    // demás se revisan con su recorrido codificado. El lado del área se limita a
+    // trayectos.area.lado-maximo-grados (un rango de celdas por fila) y la lectura
+    // se detiene al pasar de trayectos.area.resultados-maximos trayectos
+    private List<ResumenTrayecto> consultarTrayectosEnArea(Area area) 
+        throws Exception
+    {
+        if (area.latitudMaxima() - area.latitudMinima() > ladoMaximoArea
+                || area.longitudMaxima() - area.longitudMinima() > ladoMaximoArea) {
+            throw new Exception("El área no puede medir más de " + ladoMaximoArea + " grados de lado");
+        }
 
+        // la consulta de celdas es por JDBC: primero se escriben las ubicaciones pendientes
+        entityManager.flush();
+
+        Set<UUID> encontrados = new HashSet<>();
+        areas.findUbicacionesEnCeldas(CeldaEspacial.rangos(area), (trayectoId, latitud, longitud) -> {
+            if (!encontrados.contains(trayectoId) && area.contiene(latitud, longitud)) {
+                encontrados.add(trayectoId);
+            }
+            return encontrados.size() <= resultadosMaximosArea;
+        });
+
+        if (encontrados.size() <= resultadosMaximosArea) {
+            List<Trayecto> compactados = trayectos.findCompactadosEnCaja(
+                area.latitudMinima(), area.latitudMaxima(), area.longitudMinima(), area.longitudMaxima());
+            for (Trayecto trayecto : compactados) {
+                Recorrido recorrido = CodificadorRecorrido.decodificar(trayecto.getRecorridoCodificado());
+                for (int i = 0; i < recorrido.getTamano(); i++) {
+                    if (area.contiene(recorrido.getLatitudes()[i], recorrido.getLongitudes()[i])) {
+                        encontrados.add(trayecto.getId());
+                        break;
+                    }
+                }
+                if (encontrados.size() > resultadosMaximosArea) {
+                    break;
+                }
+            }
+        }
 
+        if (encontrados.size() > resultadosMaximosArea) {
+            throw new Exception("Hay más de " + resultadosMaximosArea + " trayectos en el área, indique un área más pequeña");
+        }
+        if (encontrados.isEmpty()) {
+            return List.of();
+        }
+        return trayectos.findResumenesByIdIn(encontrados);
+    }
 
+    // Listado de trayectos por páginas, ordenado por fecha y hora de inicio e id.
+    // Cada página trae el cursor de la siguiente; el tamaño se limita a
+    // trayectos.pagina.tamano-maximo. Sin ubicaciones se lee solo el resumen de
+    // cada trayecto; con ubicaciones se cargan las de toda la página en una consulta
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "listado" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public PaginaTrayectos<?> consultarTrayectos(String cursor, int tamano, boolean incluirUbicaciones) 
+        throws Exception
+    {
+        if (tamano < 1) {
+            throw new Exception("El tamaño de la página debe ser mayor a cero");
+        }
+        Limit limite = Limit.of(Math.min(tamano, tamanoMaximoPagina));
+
+        List<ResumenTrayecto> resumenes;
+        if (cursor == null || cursor.isBlank()) {
+            resumenes = trayectos.findPrimeraPagina(limite);
+        } else {
+            String[] llave = leerCursor(cursor);
+            resumenes = trayectos.findPaginaDespuesDe(LocalDateTime.parse(llave[0]), UUID.fromString(llave[1]), limite);
+        }
 
+        // si la página quedó llena puede haber más trayectos después del último
+        String siguiente = null;
+        if (resumenes.size() == limite.max()) {
+            ResumenTrayecto ultimo = resumenes.get(resumenes.size() - 1);
+            siguiente = escribirCursor(ultimo.getFechaHoraInicio(), ultimo.getId());
+        }
 
+        if (!incluirUbicaciones) {
+            return new PaginaTrayectos<>(resumenes, siguiente);
+        }
 
+        List<UUID> ids = resumenes.stream().map(ResumenTrayecto::getId).toList();
+        Map<UUID, Trayecto> porId = trayectos.findConUbicacionesByIdIn(ids).stream()
+            .collect(Collectors.toMap(Trayecto::getId, Function.identity()));
+        return new PaginaTrayectos<>(ids.stream().map(porId::get).toList(), siguiente);
+    }
 
+    // el cursor es la llave (fechaHoraInicio, id) del último trayecto de la página,
+    // codificada para que el cliente la trate como un valor opaco
+    private static String escribirCursor(LocalDateTime fechaHoraInicio, UUID id) {
+        String llave = fechaHoraInicio + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(llave.getBytes(StandardCharsets.UTF_8));
+    }
 
+    private static String[] leerCursor(String cursor) 
+        throws Exception
+    {
+        try {
+            String[] llave = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            LocalDateTime.parse(llave[0]);
+            UUID.fromString(llave[1]);
+            return llave;
+        } catch (RuntimeException e) {
+            throw new Exception("El cursor de la página no es válido");
+        }
+    }
 
+    // CU005 Consultar Resumen Trayectos
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU005" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public String consultarResumenTrayectos(LocalDateTime fechaInicio, LocalDateTime fechaFin) 
+        throws Exception
+    {
+        StringWriter resumen = new StringWriter();
+        consultarResumenTrayectos(fechaInicio, fechaFin, resumen);
+        return resumen.toString();
+    }
 
+    // CU005 Consultar Resumen Trayectos (en flujo)
+    // Escribe el resumen a medida que lee los trayectos, en bloques del tamaño del
+    // @BatchSize de las ubicaciones: las ubicaciones de todo el bloque se cargan con
+    // una sola consulta y el bloque se suelta de la sesión después de escribirlo,
+    // así que la memoria usada no depende del tamaño del rango de fechas
+    @Timed(value = MetricasTrayectos.CASOS_USO, extraTags = { "caso", "CU005" }, histogram = true)
+    @Transactional(value = TxType.REQUIRED)
+    public void consultarResumenTrayectos(LocalDateTime fechaInicio, LocalDateTime fechaFin, Writer salida) 
+        throws Exception
+    {
+        // 2. Verifica que la fecha de inicio sea menor que la fecha final
+        validarRangoResumen(fechaInicio, fechaFin);
 
+        // 4. Formatea la información de todos los trayectos
+        salida.append("Resumen de Trayectos\n");
+        salida.append("Período: ").append(String.valueOf(fechaInicio)).append(" a ").append(String.valueOf(fechaFin)).append("\n");
+        // los totales salen de las estadísticas guardadas, sin leer ubicaciones
+        TotalesTrayectos totales = usarResumenesDiarios
+            ? totalesConResumenesDiarios(fechaInicio, fechaFin)
+            : trayectos.totalesEnRangoFechas(fechaInicio, fechaFin);
+        salida.append("Total trayectos: ").append(String.valueOf(totales.getCantidad())).append("\n");
+        salida.append("Duración total: ").append(String.valueOf(totales.getDuracionTotal())).append(" segundos\n");
+        salida.append("Distancia total: ").append(String.format("%.2f", totales.getDistanciaTotal())).append(" km\n\n");
+
+        // 3. Recorre todos los trayectos en ese rango de fechas
+        try (Stream<Trayecto> trayectosEncontrados = trayectos.streamEnRangoFechas(fechaInicio, fechaFin)) {
+            List<Trayecto> bloque = new ArrayList<>(Trayecto.TAMANO_LOTE_UBICACIONES);
+            Iterator<Trayecto> iterador = trayectosEncontrados.iterator();
+            while (iterador.hasNext()) {
+                bloque.add(iterador.next());
+                if (bloque.size() == Trayecto.TAMANO_LOTE_UBICACIONES) {
+                    escribirBloque(bloque, salida);
+                }
+            }
+            escribirBloque(bloque, salida);
+        }
 
+        salida.flush();
+    }
 
+    // Verifica el rango de CU005 sin abrir una transacción; la API lo usa antes de
+    // empezar a escribir la respuesta en flujo, cuando aún puede responder 400
+    public void validarRangoResumen(LocalDateTime fechaInicio, LocalDateTime fechaFin) 
+        throws Exception
+    {
+        if (fechaInicio.isAfter(fechaFin)) {
+            throw new Exception("La fecha de inicio debe ser menor a la fecha final");
+        }
+    }
 
+    // Totales del rango sumando una fila por día completo (de cualquier tamaño) y
+    // leyendo trayectos solo en las fracciones de día de los bordes. Da los mismos
+    // totales que trayectos.totalesEnRangoFechas: los trayectos en proceso se cuentan
+    // al iniciar, pero su duración y distancia solo se suman al finalizar
+    TotalesTrayectos totalesConResumenesDiarios(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        // primer día completo y día siguiente al último día completo (fechaFin está incluida)
+        LocalDate primerDia = fechaInicio.toLocalTime().equals(LocalTime.MIDNIGHT)
+            ? fechaInicio.toLocalDate()
+            : fechaInicio.toLocalDate().plusDays(1);
+        LocalDate finDias = fechaFin.toLocalTime().equals(LocalTime.MAX)
+            ? fechaFin.toLocalDate().plusDays(1)
+            : fechaFin.toLocalDate();
+
+        if (!primerDia.isBefore(finDias)) {
+            return trayectos.totalesEnRangoFechas(fechaInicio, fechaFin);
+        }
 
+        return sumar(
+            trayectos.totalesAntesDe(fechaInicio, primerDia.atStartOfDay()),
+            resumenesDiarios.totalesEntreDias(primerDia, finDias),
+            trayectos.totalesEnRangoFechas(finDias.atStartOfDay(), fechaFin));
+    }
 
+    private static TotalesTrayectos sumar(TotalesTrayectos... partes) {
+        long cantidad = 0;
+        long duracionTotal = 0;
+        double distanciaTotal = 0;
+        for (TotalesTrayectos parte : partes) {
+            cantidad += parte.getCantidad();
+            duracionTotal += parte.getDuracionTotal();
+            distanciaTotal += parte.getDistanciaTotal();
+        }
 
+        long cantidadTotal = cantidad;
+        long duracion = duracionTotal;
+        double distancia = distanciaTotal;
+        return new TotalesTrayectos() {
+            public long getCantidad() { return cantidadTotal; }
+            public long getDuracionTotal() { return duracion; }
+            public double getDistanciaTotal() { return distancia; }
+        };
+    }
 
+    // Para cada trayecto del bloque, usa el toString personalizado y lo suelta de la sesión
+    private void escribirBloque(List<Trayecto> bloque, Writer salida) 
+        throws IOException
+    {
+        for (Trayecto trayecto : bloque) {
+            salida.append("----------------------------------------\n");
+            salida.append(trayecto.toString()).append("\n");
+        }
+        for (Trayecto trayecto : bloque) {
+            entityManager.detach(trayecto);
+        }
+        bloque.clear();
+    }
+}
@@ -0,0 +1,41 @@
+package com.bicicletas.trayectos.modelo;
+
+// Zona en la que se buscan trayectos: una caja de coordenadas, o un círculo con
+// centro y radio en kilómetros. La caja que contiene el círculo es la que se usa
+// para descartar ubicaciones con las celdas (ver CeldaEspacial); contiene revisa
+// las coordenadas exactas. No cruza el antimeridiano (longitud 180)
+public record Area(
+    double latitudMinima, double latitudMaxima,
+    double longitudMinima, double longitudMaxima,
+    double latitudCentro, double longitudCentro, double radio)
+{
+
+    // kilómetros por grado de latitud (radio de la Tierra de Trayecto.calcularDistancia)
+    static final double KILOMETROS_POR_GRADO = 6371 * Math.PI / 180;
+
+    public static Area caja(double latitudMinima, double latitudMaxima, double longitudMinima, double longitudMaxima) {
+        return new Area(latitudMinima, latitudMaxima, longitudMinima, longitudMaxima, 0, 0, 0);
+    }
+
+    public static Area circulo(double latitud, double longitud, double radio) {
+        double gradosLatitud = radio / KILOMETROS_POR_GRADO;
+        double coseno = Math.cos(Math.toRadians(Math.min(Math.abs(latitud) + gradosLatitud, 90)));
+        double gradosLongitud = coseno > 1e-9 ? gradosLatitud / coseno : 360;
+        return new Area(
+            Math.max(latitud - gradosLatitud, -90), Math.min(latitud + gradosLatitud, 90),
+            Math.max(longitud - gradosLongitud, -180), Math.min(longitud + gradosLongitud, 180),
+            latitud, longitud, radio);
+    }
+
+    public boolean esCirculo() {
+        return radio > 0;
+    }
+
+    public boolean contiene(double latitud, double longitud) {
+        if (latitud < latitudMinima || latitud > latitudMaxima || longitud < longitudMinima || longitud > longitudMaxima) {
+            return false;
+        }
+        return !esCirculo() || Trayecto.calcularDistancia(latitudCentro, longitudCentro, latitud, longitud) <= radio;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.bicicletas.trayectos.modelo;
+
+// Distancia total de un recorrido guardado en arreglos de double (ver Recorrido),
+// para recalcular distancias de muchos trayectos a la vez.
+//
+// A diferencia de llamar a Trayecto.calcularDistancia por cada par de ubicaciones,
+// cada ubicación se convierte a radianes y calcula el coseno de su latitud una sola
+// vez (se reutiliza como extremo inicial del tramo siguiente), y el ángulo se
+// obtiene con asin en lugar de atan2.
+//
+// Métodos:
+//   HAVERSINE        exacto, igual a Trayecto.calcularDistancia salvo redondeo
+//   EQUIRECTANGULAR  aproxima cada tramo como un plano (sin seno ni arcoseno); en
+//                    tramos de hasta TRAMO_MAXIMO_GRADOS (unos 11 km) y latitudes
+//                    menores a 80 grados el error relativo por tramo es menor a
+//                    ERROR_MAXIMO_EQUIRECTANGULAR. Los tramos más largos se calculan
+//                    con Haversine, así que el error se mantiene acotado
+public final class CalculadoraDistancias {
+
+    public enum Metodo { HAVERSINE, EQUIRECTANGULAR }
+
+    // radio de la Tierra en kilómetros, el mismo de Trayecto.calcularDistancia
+    static final double RADIO_TIERRA = 6371;
+
+    public static final double TRAMO_MAXIMO_GRADOS = 0.1;
+
+    public static final double ERROR_MAXIMO_EQUIRECTANGULAR = 1e-6;
+
+    private CalculadoraDistancias() {
+    }
+
+    public static double distanciaTotal(double[] latitudes, double[] longitudes, int tamano, Metodo metodo) {
+        return metodo == Metodo.EQUIRECTANGULAR
+            ? equirectangular(latitudes, longitudes, tamano)
+            : haversine(latitudes, longitudes, tamano);
+    }
+
+    public static double haversine(double[] latitudes, double[] longitudes, int tamano) {
+        if (tamano < 2) {
+            return 0;
+        }
+
+        double latitudAnterior = Math.toRadians(latitudes[0]);
+        double longitudAnterior = Math.toRadians(longitudes[0]);
+        double cosenoAnterior = Math.cos(latitudAnterior);
+
+        double suma = 0;
+        for (int i = 1; i < tamano; i++) {
+            double latitud = Math.toRadians(latitudes[i]);
+            double longitud = Math.toRadians(longitudes[i]);
+            double coseno = Math.cos(latitud);
+
+            suma += angulo(latitud - latitudAnterior, longitud - longitudAnterior, cosenoAnterior * coseno);
+
+            latitudAnterior = latitud;
+            longitudAnterior = longitud;
+            cosenoAnterior = coseno;
+        }
+        return RADIO_TIERRA * suma;
+    }
+
+    public static double equirectangular(double[] latitudes, double[] longitudes, int tamano) {
+        if (tamano < 2) {
+            return 0;
+        }
+
+        double latitudAnterior = Math.toRadians(latitudes[0]);
+        double longitudAnterior = Math.toRadians(longitudes[0]);
+        double cosenoAnterior = Math.cos(latitudAnterior);
+        double tramoMaximo = Math.toRadians(TRAMO_MAXIMO_GRADOS);
+
+        double suma = 0;
+        for (int i = 1; i < tamano; i++) {
+            double latitud = Math.toRadians(latitudes[i]);
+            double longitud = Math.toRadians(longitudes[i]);
+            double coseno = Math.cos(latitud);
+
+            double diferenciaLatitud = latitud - latitudAnterior;
+            double diferenciaLongitud = longitud - longitudAnterior;
+            if (Math.abs(diferenciaLatitud) > tramoMaximo || Math.abs(diferenciaLongitud) > tramoMaximo) {
+                suma += angulo(diferenciaLatitud, diferenciaLongitud, cosenoAnterior * coseno);
+            } else {
+                // el promedio de los cosenos de los extremos en lugar del coseno de
+                // la latitud media: evita un coseno más por tramo
+                double x = diferenciaLongitud * 0.5 * (cosenoAnterior + coseno);
+                suma += Math.sqrt(x * x + diferenciaLatitud * diferenciaLatitud);
+            }
+
+            latitudAnterior = latitud;
+            longitudAnterior = longitud;
+            cosenoAnterior = coseno;
+        }
+        return RADIO_TIERRA * suma;
+    }
+
+    // ángulo central entre dos puntos (Haversine), en radianes
+    private static double angulo(double diferenciaLatitud, double diferenciaLongitud, double productoCosenos) {
+        double senoLatitud = Math.sin(diferenciaLatitud / 2);
+        double senoLongitud = Math.sin(diferenciaLongitud / 2);
+        double a = senoLatitud * senoLatitud + productoCosenos * senoLongitud * senoLongitud;
+        return 2 * Math.asin(Math.sqrt(Math.min(a, 1)));
+    }
+
+}
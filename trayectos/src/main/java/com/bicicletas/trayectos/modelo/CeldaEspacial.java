@@ -0,0 +1,54 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cuadrícula fija sobre latitud y longitud para buscar ubicaciones por área.
+//
+// Cada ubicación guarda el número de su celda (columna celda, índice
+// idx_ubicacion_celda): fila * COLUMNAS + columna, con celdas de GRADOS de lado
+// (unos 1,1 km de latitud). Las celdas de una misma fila son consecutivas, así que
+// un área se cubre con un rango de celdas por fila y la base de datos solo lee las
+// ubicaciones de esas celdas. Las migraciones calculan la misma celda en SQL
+public final class CeldaEspacial {
+
+    // lado de una celda en grados
+    public static final double GRADOS = 0.01;
+
+    static final long FILAS = 18_000;
+
+    static final long COLUMNAS = 36_000;
+
+    private CeldaEspacial() {
+    }
+
+    public static long celda(double latitud, double longitud) {
+        return fila(latitud) * COLUMNAS + columna(longitud);
+    }
+
+    // rangos {desde, hasta} (incluidos) de las celdas que cubren el área, uno por
+    // fila; se agrega una celda a cada lado para que una ubicación en el borde de
+    // una celda no se pierda por redondeo. El número de rangos crece con la altura
+    // del área, así que quien consulta limita su tamaño (ver trayectos.area.lado-maximo-grados)
+    public static List<long[]> rangos(Area area) {
+        long filaDesde = Math.max(fila(area.latitudMinima()) - 1, 0);
+        long filaHasta = Math.min(fila(area.latitudMaxima()) + 1, FILAS - 1);
+        long columnaDesde = Math.max(columna(area.longitudMinima()) - 1, 0);
+        long columnaHasta = Math.min(columna(area.longitudMaxima()) + 1, COLUMNAS - 1);
+
+        List<long[]> rangos = new ArrayList<>((int) (filaHasta - filaDesde + 1));
+        for (long fila = filaDesde; fila <= filaHasta; fila++) {
+            rangos.add(new long[] { fila * COLUMNAS + columnaDesde, fila * COLUMNAS + columnaHasta });
+        }
+        return rangos;
+    }
+
+    static long fila(double latitud) {
+        return Math.clamp((long) Math.floor((latitud + 90) / GRADOS), 0, FILAS - 1);
+    }
+
+    static long columna(double longitud) {
+        return Math.clamp((long) Math.floor((longitud + 180) / GRADOS), 0, COLUMNAS - 1);
+    }
+
+}
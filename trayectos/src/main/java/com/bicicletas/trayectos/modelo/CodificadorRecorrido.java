@@ -0,0 +1,141 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.util.Arrays;
+
+// Codifica un Recorrido en un arreglo de bytes compacto para guardarlo en la
+// fila del trayecto cuando finaliza.
+//
+// Formato (versión 1):
+//   versión (1 byte) | número de ubicaciones (varint) | por cada ubicación:
+//   diferencia de fecha y hora en microsegundos, de latitud y de longitud en
+//   millonésimas de grado respecto a la ubicación anterior (varint zigzag)
+//
+// Una ubicación cada 5 segundos a velocidad de bicicleta ocupa unos 8 bytes, en
+// lugar de una fila de ubicacion. Las coordenadas quedan redondeadas a la
+// millonésima de grado (unos 11 cm); las fechas y horas no pierden precisión.
+public final class CodificadorRecorrido {
+
+    static final byte VERSION = 1;
+
+    static final double MICROGRADOS = 1_000_000.0;
+
+    private CodificadorRecorrido() {
+    }
+
+    public static byte[] codificar(Recorrido recorrido) {
+        int tamano = recorrido.getTamano();
+        Salida salida = new Salida(8 + tamano * 8);
+        salida.escribirByte(VERSION);
+        salida.escribirVarint(tamano);
+
+        long fechaHoraAnterior = 0;
+        long latitudAnterior = 0;
+        long longitudAnterior = 0;
+        for (int i = 0; i < tamano; i++) {
+            long fechaHora = recorrido.getFechasHora()[i];
+            long latitud = Math.round(recorrido.getLatitudes()[i] * MICROGRADOS);
+            long longitud = Math.round(recorrido.getLongitudes()[i] * MICROGRADOS);
+
+            salida.escribirVarint(zigzag(fechaHora - fechaHoraAnterior));
+            salida.escribirVarint(zigzag(latitud - latitudAnterior));
+            salida.escribirVarint(zigzag(longitud - longitudAnterior));
+
+            fechaHoraAnterior = fechaHora;
+            latitudAnterior = latitud;
+            longitudAnterior = longitud;
+        }
+        return salida.bytes();
+    }
+
+    public static Recorrido decodificar(byte[] codificado) {
+        Entrada entrada = new Entrada(codificado);
+        byte version = entrada.leerByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Versión de recorrido codificado no soportada: " + version);
+        }
+
+        int tamano = (int) entrada.leerVarint();
+        Recorrido recorrido = new Recorrido(tamano);
+
+        long fechaHora = 0;
+        long latitud = 0;
+        long longitud = 0;
+        for (int i = 0; i < tamano; i++) {
+            fechaHora += deszigzag(entrada.leerVarint());
+            latitud += deszigzag(entrada.leerVarint());
+            longitud += deszigzag(entrada.leerVarint());
+            recorrido.agregar(fechaHora, longitud / MICROGRADOS, latitud / MICROGRADOS);
+        }
+        return recorrido;
+    }
+
+    // los valores pequeños, positivos o negativos, quedan en pocos bytes
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long deszigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private static final class Salida {
+
+        private byte[] bytes;
+
+        private int posicion;
+
+        Salida(int capacidad) {
+            bytes = new byte[capacidad];
+        }
+
+        void escribirByte(byte valor) {
+            if (posicion == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[posicion++] = valor;
+        }
+
+        // 7 bits por byte, el bit alto indica que siguen más bytes
+        void escribirVarint(long valor) {
+            while ((valor & ~0x7FL) != 0) {
+                escribirByte((byte) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            escribirByte((byte) valor);
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(bytes, posicion);
+        }
+
+    }
+
+    private static final class Entrada {
+
+        private final byte[] bytes;
+
+        private int posicion;
+
+        Entrada(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        byte leerByte() {
+            return bytes[posicion++];
+        }
+
+        long leerVarint() {
+            long valor = 0;
+            int desplazamiento = 0;
+            byte actual;
+            do {
+                actual = leerByte();
+                valor |= (long) (actual & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while ((actual & 0x80) != 0);
+            return valor;
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Estadísticas de un trayecto finalizado calculadas de nuevo a partir de todas sus
+// ubicaciones (ver RecalculoEstadisticas); son las mismas que acumula el trayecto
+// al registrar ubicaciones y al finalizar
+public record EstadisticasTrayecto(
+    int numeroUbicaciones,
+    double distanciaTotal,
+    long duracion,
+    double velocidadPromedio,
+    LocalDateTime ultimaFechaHora,
+    double ultimaLongitud,
+    double ultimaLatitud,
+    double latitudMinima,
+    double latitudMaxima,
+    double longitudMinima,
+    double longitudMaxima)
+{
+
+    // `recorrido` debe tener al menos una ubicación
+    public static EstadisticasTrayecto calcular(
+        LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin, Recorrido recorrido, CalculadoraDistancias.Metodo metodo)
+    {
+        int tamano = recorrido.getTamano();
+        double[] latitudes = recorrido.getLatitudes();
+        double[] longitudes = recorrido.getLongitudes();
+
+        double latitudMinima = latitudes[0];
+        double latitudMaxima = latitudes[0];
+        double longitudMinima = longitudes[0];
+        double longitudMaxima = longitudes[0];
+        for (int i = 1; i < tamano; i++) {
+            latitudMinima = Math.min(latitudMinima, latitudes[i]);
+            latitudMaxima = Math.max(latitudMaxima, latitudes[i]);
+            longitudMinima = Math.min(longitudMinima, longitudes[i]);
+            longitudMaxima = Math.max(longitudMaxima, longitudes[i]);
+        }
+
+        // como en CU003: segundos completos y kilómetros por hora
+        double distancia = recorrido.calcularDistanciaTotal(metodo);
+        long duracion = Duration.between(fechaHoraInicio, fechaHoraFin).getSeconds();
+        double velocidad = duracion > 0 ? distancia / (duracion / 3600.0) : 0.0;
+
+        return new EstadisticasTrayecto(
+            tamano, distancia, duracion, velocidad,
+            recorrido.fechaHora(tamano - 1), longitudes[tamano - 1], latitudes[tamano - 1],
+            latitudMinima, latitudMaxima, longitudMinima, longitudMaxima);
+    }
+
+}
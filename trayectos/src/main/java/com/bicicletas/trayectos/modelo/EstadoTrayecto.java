@@ -0,0 +1,28 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Estado actual de un trayecto (en curso o finalizado) leído de una sola fila,
+// sin cargar sus ubicaciones; sirve para mostrar trayectos en vivo
+public interface EstadoTrayecto {
+
+    UUID getId();
+
+    String getPropietario();
+
+    boolean isEnProceso();
+
+    LocalDateTime getFechaHoraInicio();
+
+    Double getDistanciaTotal();
+
+    Integer getNumeroUbicaciones();
+
+    LocalDateTime getUltimaFechaHora();
+
+    Double getUltimaLongitud();
+
+    Double getUltimaLatitud();
+
+}
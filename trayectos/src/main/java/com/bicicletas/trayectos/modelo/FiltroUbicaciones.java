@@ -0,0 +1,55 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.time.Duration;
+
+// Filtro de las ubicaciones que llegan de un dispositivo, comparadas con la última
+// ubicación aceptada del trayecto (sus campos ultima*):
+//   FUERA_DE_ORDEN   tomada antes que la última aceptada: llegó tarde (por ejemplo
+//                    desde la cola de ingesta) y sumarla desordenaría la distancia
+//   DUPLICADA        a distanciaMinimaMetros o menos: el GPS de una bicicleta
+//                    detenida reporta la misma posición con pequeñas variaciones
+//   SALTO_IMPOSIBLE  más lejos de lo que se puede recorrer a velocidadMaximaKmh en
+//                    el tiempo transcurrido: una lectura errónea del GPS
+// Una ubicación descartada no cambia la referencia, así que después de una lectura
+// errónea la siguiente se compara con la última buena
+public final class FiltroUbicaciones {
+
+    public enum Resultado { ACEPTADA, FUERA_DE_ORDEN, DUPLICADA, SALTO_IMPOSIBLE }
+
+    private FiltroUbicaciones() {
+    }
+
+    public static Resultado evaluar(
+        Trayecto trayecto, Ubicacion ubicacion, double distanciaMinimaMetros, double velocidadMaximaKmh)
+    {
+        if (trayecto.getUltimaLatitud() == null || trayecto.getUltimaLongitud() == null) {
+            return Resultado.ACEPTADA;
+        }
+        if (fueraDeOrden(trayecto, ubicacion)) {
+            return Resultado.FUERA_DE_ORDEN;
+        }
+
+        // en kilómetros
+        double distancia = Trayecto.calcularDistancia(
+            trayecto.getUltimaLatitud(), trayecto.getUltimaLongitud(),
+            ubicacion.getLatitud(), ubicacion.getLongitud());
+        if (distancia * 1000 <= distanciaMinimaMetros) {
+            return Resultado.DUPLICADA;
+        }
+
+        if (velocidadMaximaKmh > 0 && trayecto.getUltimaFechaHora() != null && ubicacion.getFechaHora() != null) {
+            long milisegundos = Duration.between(trayecto.getUltimaFechaHora(), ubicacion.getFechaHora()).toMillis();
+            if (distancia > velocidadMaximaKmh * milisegundos / 3_600_000.0) {
+                return Resultado.SALTO_IMPOSIBLE;
+            }
+        }
+        return Resultado.ACEPTADA;
+    }
+
+    // la ubicación es anterior a la última aceptada del trayecto
+    public static boolean fueraDeOrden(Trayecto trayecto, Ubicacion ubicacion) {
+        return trayecto.getUltimaFechaHora() != null && ubicacion.getFechaHora() != null
+            && ubicacion.getFechaHora().isBefore(trayecto.getUltimaFechaHora());
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+// Genera UUID versión 7 (RFC 9562): los primeros 48 bits son la hora en
+// milisegundos, así que los ids nuevos quedan al final del índice de la llave
+// primaria en lugar de repartirse por todo el índice como los UUID aleatorios
+// (en InnoDB la llave primaria es el índice agrupado de la tabla).
+//
+// Los 12 bits siguientes son un contador que mantiene el orden entre los ids
+// generados en el mismo milisegundo; los últimos 62 bits son aleatorios.
+public class GeneradorUuidV7 implements UuidValueGenerator {
+
+    private static final Random ALEATORIO = new SecureRandom();
+
+    // milisegundos << 12 | contador del último id generado
+    private static final AtomicLong ULTIMO = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return generar();
+    }
+
+    public static UUID generar() {
+        long marca = siguienteMarca(System.currentTimeMillis());
+
+        long masSignificativos = (marca >>> 12) << 16   // 48 bits de milisegundos
+            | 0x7000L                                    // versión 7
+            | (marca & 0xFFFL);                          // 12 bits de contador
+        long menosSignificativos = ALEATORIO.nextLong() >>> 2
+            | 0x8000000000000000L;                       // variante RFC 9562
+
+        return new UUID(masSignificativos, menosSignificativos);
+    }
+
+    // la marca nunca retrocede: en el mismo milisegundo (o si el reloj del sistema
+    // retrocede) se incrementa el contador, que al desbordarse avanza el milisegundo
+    private static long siguienteMarca(long milisegundos) {
+        long actual = milisegundos << 12;
+        return ULTIMO.updateAndGet(ultimo -> actual > ultimo ? actual : ultimo + 1);
+    }
+
+}
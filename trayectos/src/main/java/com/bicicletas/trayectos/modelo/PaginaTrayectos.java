@@ -0,0 +1,20 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Una página de trayectos ordenados por fecha y hora de inicio e id.
+// `siguiente` es el cursor para pedir la página siguiente (null en la última)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaTrayectos<T> {
+
+    private List<T> trayectos;
+
+    private String siguiente;
+
+}
@@ -0,0 +1,85 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+
+// Ubicaciones de un trayecto en arreglos paralelos de tipos primitivos: la
+// ubicación i es (fechasHora[i], longitudes[i], latitudes[i]). Para trayectos de
+// miles de ubicaciones ocupa una fracción de la memoria de una entidad Ubicacion
+// (con su UUID, LocalDateTime y Double) por punto, y se recorre sin desempacar
+// valores. Las fechas y horas son microsegundos desde 1970-01-01 en la hora local
+// con la que se guardaron.
+@Getter
+public class Recorrido {
+
+    private long[] fechasHora;
+
+    private double[] longitudes;
+
+    private double[] latitudes;
+
+    @JsonIgnore
+    private int tamano;
+
+    public Recorrido() {
+        this(16);
+    }
+
+    public Recorrido(int capacidad) {
+        fechasHora = new long[Math.max(capacidad, 1)];
+        longitudes = new double[fechasHora.length];
+        latitudes = new double[fechasHora.length];
+    }
+
+    public void agregar(long fechaHora, double longitud, double latitud) {
+        if (tamano == fechasHora.length) {
+            int capacidad = tamano * 2;
+            fechasHora = Arrays.copyOf(fechasHora, capacidad);
+            longitudes = Arrays.copyOf(longitudes, capacidad);
+            latitudes = Arrays.copyOf(latitudes, capacidad);
+        }
+        fechasHora[tamano] = fechaHora;
+        longitudes[tamano] = longitud;
+        latitudes[tamano] = latitud;
+        tamano++;
+    }
+
+    // ajusta los arreglos al número de ubicaciones (por ejemplo antes de serializar)
+    public Recorrido recortar() {
+        if (tamano < fechasHora.length) {
+            fechasHora = Arrays.copyOf(fechasHora, tamano);
+            longitudes = Arrays.copyOf(longitudes, tamano);
+            latitudes = Arrays.copyOf(latitudes, tamano);
+        }
+        return this;
+    }
+
+    public LocalDateTime fechaHora(int i) {
+        return aFechaHora(fechasHora[i]);
+    }
+
+    // Distancia total en kilómetros (Haversine, como Trayecto.calcularDistanciaTotal)
+    public double calcularDistanciaTotal() {
+        return calcularDistanciaTotal(CalculadoraDistancias.Metodo.HAVERSINE);
+    }
+
+    public double calcularDistanciaTotal(CalculadoraDistancias.Metodo metodo) {
+        return CalculadoraDistancias.distanciaTotal(latitudes, longitudes, tamano, metodo);
+    }
+
+    public static long aMicrosegundos(Timestamp fechaHora) {
+        return Math.floorDiv(fechaHora.getTime(), 1000) * 1_000_000 + fechaHora.getNanos() / 1000;
+    }
+
+    public static LocalDateTime aFechaHora(long microsegundos) {
+        Timestamp fechaHora = new Timestamp(Math.floorDiv(microsegundos, 1_000_000) * 1000);
+        fechaHora.setNanos((int) Math.floorMod(microsegundos, 1_000_000) * 1000);
+        return fechaHora.toLocalDateTime();
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Totales de los trayectos iniciados en un día por un propietario. Se actualizan
+// al iniciar (cantidad) y al finalizar (duración y distancia) cada trayecto, así
+// que CU005 suma una fila por día y propietario en lugar de una por trayecto
+@Entity
+@IdClass(ResumenDiario.Llave.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenDiario {
+
+    @Id
+    LocalDate dia;
+
+    @Id
+    String propietario;
+
+    long cantidad;
+
+    // en segundos, solo de los trayectos finalizados
+    long duracionTotal;
+
+    // en kilómetros, solo de los trayectos finalizados
+    double distanciaTotal;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Llave implements Serializable {
+
+        LocalDate dia;
+
+        String propietario;
+
+    }
+
+}
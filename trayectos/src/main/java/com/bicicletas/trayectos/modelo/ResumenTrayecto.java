@@ -0,0 +1,28 @@
+package com.bicicletas.trayectos.modelo;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Datos de un trayecto para listados, leídos de una sola fila y sin sus
+// ubicaciones
+public interface ResumenTrayecto {
+
+    UUID getId();
+
+    String getPropietario();
+
+    boolean isEnProceso();
+
+    LocalDateTime getFechaHoraInicio();
+
+    LocalDateTime getFechaHoraFin();
+
+    Long getDuracion();
+
+    Double getDistanciaTotal();
+
+    Integer getNumeroUbicaciones();
+
+    Double getVelocidadPromedio();
+
+}
@@ -0,0 +1,116 @@
+package com.bicicletas.trayectos.modelo;
+
+// Simplificación de un recorrido con Douglas-Peucker: quita las ubicaciones que
+// están a menos de una tolerancia (en metros) del tramo recto entre las que se
+// conservan. Un tramo quieto o en línea recta queda en sus dos extremos, así que un
+// trayecto típico (una ubicación cada pocos segundos) conserva una fracción de sus
+// ubicaciones; la primera y la última siempre se conservan.
+//
+// Quitar ubicaciones solo puede acortar la distancia recorrida. Si la distancia del
+// recorrido simplificado es menor que la original en más de errorDistanciaMaximo
+// (relativo), se vuelve a simplificar con la mitad de la tolerancia, hasta
+// INTENTOS_MAXIMOS veces; si aún no se cumple se retorna el recorrido completo
+public final class SimplificadorRecorrido {
+
+    static final int INTENTOS_MAXIMOS = 8;
+
+    // metros por grado de latitud, con el radio de CalculadoraDistancias
+    private static final double METROS_POR_GRADO = CalculadoraDistancias.RADIO_TIERRA * 1000 * Math.PI / 180;
+
+    private SimplificadorRecorrido() {
+    }
+
+    // retorna el mismo recorrido si no se quita ninguna ubicación
+    public static Recorrido simplificar(Recorrido recorrido, double toleranciaMetros, double errorDistanciaMaximo) {
+        if (recorrido.getTamano() <= 2 || toleranciaMetros <= 0) {
+            return recorrido;
+        }
+
+        double distancia = recorrido.calcularDistanciaTotal();
+        double tolerancia = toleranciaMetros;
+        for (int intento = 0; intento < INTENTOS_MAXIMOS; intento++) {
+            Recorrido simplificado = douglasPeucker(recorrido, tolerancia);
+            if (distancia - simplificado.calcularDistanciaTotal() <= errorDistanciaMaximo * distancia) {
+                return simplificado;
+            }
+            tolerancia /= 2;
+        }
+        return recorrido;
+    }
+
+    static Recorrido douglasPeucker(Recorrido recorrido, double toleranciaMetros) {
+        int tamano = recorrido.getTamano();
+        double[] latitudes = recorrido.getLatitudes();
+        double[] longitudes = recorrido.getLongitudes();
+
+        boolean[] conservar = new boolean[tamano];
+        conservar[0] = true;
+        conservar[tamano - 1] = true;
+        int conservadas = 2;
+
+        // tramos pendientes (inicio, fin) en una pila en lugar de recursión: un
+        // trayecto de miles de ubicaciones no agota la pila del hilo
+        int[] pila = new int[2 * tamano];
+        int cima = 0;
+        pila[cima++] = 0;
+        pila[cima++] = tamano - 1;
+
+        while (cima > 0) {
+            int fin = pila[--cima];
+            int inicio = pila[--cima];
+
+            double maxima = -1;
+            int lejana = -1;
+            for (int i = inicio + 1; i < fin; i++) {
+                double distancia = distanciaATramo(latitudes[i], longitudes[i],
+                    latitudes[inicio], longitudes[inicio], latitudes[fin], longitudes[fin]);
+                if (distancia > maxima) {
+                    maxima = distancia;
+                    lejana = i;
+                }
+            }
+
+            if (lejana >= 0 && maxima > toleranciaMetros) {
+                conservar[lejana] = true;
+                conservadas++;
+                pila[cima++] = inicio;
+                pila[cima++] = lejana;
+                pila[cima++] = lejana;
+                pila[cima++] = fin;
+            }
+        }
+
+        if (conservadas == tamano) {
+            return recorrido;
+        }
+        long[] fechasHora = recorrido.getFechasHora();
+        Recorrido simplificado = new Recorrido(conservadas);
+        for (int i = 0; i < tamano; i++) {
+            if (conservar[i]) {
+                simplificado.agregar(fechasHora[i], longitudes[i], latitudes[i]);
+            }
+        }
+        return simplificado;
+    }
+
+    // distancia en metros de un punto al tramo entre a y b, en un plano tangente en
+    // a (los tramos entre ubicaciones son cortos)
+    private static double distanciaATramo(
+        double latitud, double longitud,
+        double latitudA, double longitudA,
+        double latitudB, double longitudB)
+    {
+        double escalaLongitud = METROS_POR_GRADO * Math.cos(Math.toRadians(latitudA));
+        double x = (longitud - longitudA) * escalaLongitud;
+        double y = (latitud - latitudA) * METROS_POR_GRADO;
+        double xb = (longitudB - longitudA) * escalaLongitud;
+        double yb = (latitudB - latitudA) * METROS_POR_GRADO;
+
+        double largo = xb * xb + yb * yb;
+        double t = largo > 0 ? Math.max(0, Math.min(1, (x * xb + y * yb) / largo)) : 0;
+        double dx = x - t * xb;
+        double dy = y - t * yb;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+}
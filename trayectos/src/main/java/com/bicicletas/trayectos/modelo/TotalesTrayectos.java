@@ -0,0 +1,13 @@
+package com.bicicletas.trayectos.modelo;
+
+// Totales de un conjunto de trayectos, calculados por la base de datos a partir
+// de las estadísticas guardadas en cada trayecto (sin leer sus ubicaciones)
+public interface TotalesTrayectos {
+
+    long getCantidad();
+
+    long getDuracionTotal();
+
+    double getDistanciaTotal();
+
+}
@@ -5,30 +5,52 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.UuidGenerator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderBy;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+// los índices los crean las migraciones (db/migration); aquí quedan documentados
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_trayecto_inicio", columnList = "fecha_hora_inicio, id"),
+    @Index(name = "idx_trayecto_caja", columnList = "latitud_minima, latitud_maxima, longitud_minima, longitud_maxima")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Trayecto {
 
+    public static final int TAMANO_LOTE_UBICACIONES = 100;
+
+    // ids ordenados por fecha de creación (ver GeneradorUuidV7)
     @Id
-    @GeneratedValue(strategy=GenerationType.UUID)
+    @UuidGenerator(algorithm = GeneradorUuidV7.class)
     UUID id;
 
+    // aumenta con cada cambio del trayecto; si dos transacciones lo cambian al mismo
+    // tiempo, la que confirma después falla en lugar de sobrescribir a la otra
+    // (TrayectosService repite la operación)
+    @JsonIgnore
+    @Version
+    Long version;
+
     @Temporal(TemporalType.TIMESTAMP)
     LocalDateTime fechaHoraInicio;
 
@@ -37,12 +59,109 @@ public class Trayecto {
 
     Long duracion;
 
+    // estadísticas que se acumulan con cada ubicación registrada (ver acumularUbicacion)
+    // distancia en kilómetros
+    Double distanciaTotal = 0.0;
+
+    Integer numeroUbicaciones = 0;
+
+    LocalDateTime ultimaFechaHora;
+
+    Double ultimaLongitud;
+
+    Double ultimaLatitud;
+
+    // caja que contiene todas las ubicaciones del trayecto
+    Double latitudMinima;
+
+    Double latitudMaxima;
+
+    Double longitudMinima;
+
+    Double longitudMaxima;
+
+    // velocidad en kilómetros por hora, calculada al finalizar el trayecto
+    Double velocidadPromedio;
+
     boolean enProceso = false;
 
+    // bicicleta o deportista al que pertenece el trayecto
+    String propietario;
+
+    // igual a propietario mientras el trayecto está en proceso y null cuando finaliza;
+    // la restricción única (que admite varios null) garantiza un solo trayecto
+    // activo por propietario y sirve de índice para buscarlo
+    @JsonIgnore
+    @Column(unique = true)
+    String propietarioActivo;
+
+    // todas las ubicaciones del trayecto codificadas (ver CodificadorRecorrido); se
+    // guarda al finalizar, así que un trayecto finalizado se muestra leyendo solo su fila
+    @JsonIgnore
+    @Column(length = 16_777_215)
+    byte[] recorridoCodificado;
+
+    // true si el recorrido codificado se guardó simplificado (sin algunas ubicaciones);
+    // si además se borraron las filas de ubicacion, las estadísticas ya no se pueden
+    // volver a calcular (ver RecalculoEstadisticas)
+    @JsonIgnore
+    boolean recorridoSimplificado = false;
+
+    // al recorrer varios trayectos, sus ubicaciones se cargan de a 100 trayectos
+    // por consulta en lugar de una consulta por trayecto
     @JsonManagedReference
     @OneToMany(mappedBy = "trayecto", cascade = CascadeType.ALL)
+    @OrderBy("fechaHora ASC")
+    @BatchSize(size = Trayecto.TAMANO_LOTE_UBICACIONES)
     List<Ubicacion> ubicaciones = new ArrayList<>();
 
+    // Estado acumulado de un trayecto, leído sin cargar la entidad (ver
+    // TrayectosRepository.findAcumuladoById): el objeto no queda administrado, se
+    // le acumulan las ubicaciones nuevas y se escribe con guardarAcumulado
+    public Trayecto(
+        UUID id, Long version, boolean enProceso, LocalDateTime fechaHoraInicio,
+        Double distanciaTotal, Integer numeroUbicaciones,
+        LocalDateTime ultimaFechaHora, Double ultimaLongitud, Double ultimaLatitud,
+        Double latitudMinima, Double latitudMaxima, Double longitudMinima, Double longitudMaxima)
+    {
+        this.id = id;
+        this.version = version;
+        this.enProceso = enProceso;
+        this.fechaHoraInicio = fechaHoraInicio;
+        this.distanciaTotal = distanciaTotal;
+        this.numeroUbicaciones = numeroUbicaciones;
+        this.ultimaFechaHora = ultimaFechaHora;
+        this.ultimaLongitud = ultimaLongitud;
+        this.ultimaLatitud = ultimaLatitud;
+        this.latitudMinima = latitudMinima;
+        this.latitudMaxima = latitudMaxima;
+        this.longitudMinima = longitudMinima;
+        this.longitudMaxima = longitudMaxima;
+    }
+
+    // Suma una nueva ubicación a la distancia, el número de ubicaciones y la última
+    // ubicación del trayecto; solo usa la ubicación anterior, no la lista completa
+    public void acumularUbicacion(Ubicacion ubicacion) {
+        double distancia = distanciaTotal != null ? distanciaTotal : 0.0;
+        if (ultimaLatitud != null && ultimaLongitud != null) {
+            distancia += calcularDistancia(
+                ultimaLatitud, ultimaLongitud,
+                ubicacion.getLatitud(), ubicacion.getLongitud()
+            );
+        }
+
+        distanciaTotal = distancia;
+        numeroUbicaciones = (numeroUbicaciones != null ? numeroUbicaciones : 0) + 1;
+        ultimaFechaHora = ubicacion.getFechaHora();
+        ultimaLongitud = ubicacion.getLongitud();
+        ultimaLatitud = ubicacion.getLatitud();
+
+        latitudMinima = latitudMinima != null ? Math.min(latitudMinima, ultimaLatitud) : ultimaLatitud;
+        latitudMaxima = latitudMaxima != null ? Math.max(latitudMaxima, ultimaLatitud) : ultimaLatitud;
+        longitudMinima = longitudMinima != null ? Math.min(longitudMinima, ultimaLongitud) : ultimaLongitud;
+        longitudMaxima = longitudMaxima != null ? Math.max(longitudMaxima, ultimaLongitud) : ultimaLongitud;
+    }
+
     // Calcula la distancia total recorrida usando la fórmula de Haversine
     public double calcularDistanciaTotal() {
         double distanciaTotal = 0;
@@ -59,7 +178,7 @@ public class Trayecto {
         return distanciaTotal;
     }
 
-    private double calcularDistancia(double lat1, double lon1, double lat2, double lon2) {
+    public static double calcularDistancia(double lat1, double lon1, double lat2, double lon2) {
         final int R = 6371; // Radio de la Tierra en kilómetros
 
         double latDistance = Math.toRadians(lat2 - lat1);
@@ -77,21 +196,41 @@ public class Trayecto {
         StringBuilder sb = new StringBuilder();
         sb.append("Trayecto:\n");
         sb.append("  Fecha/hora inicio: ").append(fechaHoraInicio).append("\n");
-        if (ubicaciones.size() > 0) {
-            Ubicacion inicial = ubicaciones.get(0);
-            sb.append("  Ubicación inicial: (").append(inicial.getLongitud())
-              .append(", ").append(inicial.getLatitud()).append(")\n");
-        }
-        sb.append("  Ubicaciones registradas:\n");
-        for (Ubicacion u : ubicaciones) {
-            sb.append("    ").append(u.getFechaHora())
-              .append(": (").append(u.getLongitud())
-              .append(", ").append(u.getLatitud()).append(")\n");
+        if (recorridoCodificado != null) {
+            // trayecto finalizado: no se leen las filas de ubicacion
+            Recorrido recorrido = CodificadorRecorrido.decodificar(recorridoCodificado);
+            if (recorrido.getTamano() > 0) {
+                sb.append("  Ubicación inicial: (").append(recorrido.getLongitudes()[0])
+                  .append(", ").append(recorrido.getLatitudes()[0]).append(")\n");
+            }
+            sb.append("  Ubicaciones registradas:\n");
+            for (int i = 0; i < recorrido.getTamano(); i++) {
+                sb.append("    ").append(recorrido.fechaHora(i))
+                  .append(": (").append(recorrido.getLongitudes()[i])
+                  .append(", ").append(recorrido.getLatitudes()[i]).append(")\n");
+            }
+        } else {
+            if (ubicaciones.size() > 0) {
+                Ubicacion inicial = ubicaciones.get(0);
+                sb.append("  Ubicación inicial: (").append(inicial.getLongitud())
+                  .append(", ").append(inicial.getLatitud()).append(")\n");
+            }
+            sb.append("  Ubicaciones registradas:\n");
+            for (Ubicacion u : ubicaciones) {
+                sb.append("    ").append(u.getFechaHora())
+                  .append(": (").append(u.getLongitud())
+                  .append(", ").append(u.getLatitud()).append(")\n");
+            }
         }
         if (!enProceso && fechaHoraFin != null) {
             sb.append("  Fecha/hora fin: ").append(fechaHoraFin).append("\n");
             sb.append("  Duración: ").append(duracion).append(" segundos\n");
-            sb.append("  Distancia total: ").append(String.format("%.2f", calcularDistanciaTotal())).append(" km\n");
+            // la distancia ya está acumulada, no se recorren las ubicaciones
+            double distancia = distanciaTotal != null ? distanciaTotal : calcularDistanciaTotal();
+            sb.append("  Distancia total: ").append(String.format("%.2f", distancia)).append(" km\n");
+            if (velocidadPromedio != null) {
+                sb.append("  Velocidad promedio: ").append(String.format("%.2f", velocidadPromedio)).append(" km/h\n");
+            }
         }
         return sb.toString();
     }
@@ -3,27 +3,37 @@ package com.bicicletas.trayectos.modelo;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+import org.hibernate.annotations.UuidGenerator;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+// los índices los crean las migraciones (db/migration); aquí quedan documentados
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_ubicacion_trayecto_fecha", columnList = "trayecto_id, fecha_hora"),
+    @Index(name = "idx_ubicacion_celda", columnList = "celda, trayecto_id, latitud, longitud")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Ubicacion {
 
+    // ids ordenados por fecha de creación (ver GeneradorUuidV7)
     @Id
-    @GeneratedValue(strategy=GenerationType.UUID)
+    @UuidGenerator(algorithm = GeneradorUuidV7.class)
     UUID id;
 
     @Temporal(TemporalType.TIMESTAMP)
@@ -33,8 +43,19 @@ public class Ubicacion {
 
     Double latitud;
 
+    // celda de la cuadrícula espacial (ver CeldaEspacial) para buscar trayectos por área
+    @JsonIgnore
+    Long celda;
+
     @JsonBackReference
     @ManyToOne
     Trayecto trayecto;
 
+    @PrePersist
+    void asignarCelda() {
+        if (latitud != null && longitud != null) {
+            celda = CeldaEspacial.celda(latitud, longitud);
+        }
+    }
+
 }
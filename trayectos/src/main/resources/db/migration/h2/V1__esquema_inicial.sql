@@ -0,0 +1,29 @@
+-- Esquema inicial de trayectos y ubicaciones (equivalente al que generaba Hibernate)
+
+create table trayecto (
+    id uuid not null,
+    fecha_hora_inicio timestamp(6),
+    fecha_hora_fin timestamp(6),
+    duracion bigint,
+    distancia_total float(53),
+    numero_ubicaciones integer,
+    ultima_fecha_hora timestamp(6),
+    ultima_longitud float(53),
+    ultima_latitud float(53),
+    velocidad_promedio float(53),
+    en_proceso boolean not null,
+    propietario varchar(255),
+    propietario_activo varchar(255),
+    primary key (id),
+    constraint uk_trayecto_propietario_activo unique (propietario_activo)
+);
+
+create table ubicacion (
+    id uuid not null,
+    fecha_hora timestamp(6),
+    longitud float(53),
+    latitud float(53),
+    trayecto_id uuid,
+    primary key (id),
+    constraint fk_ubicacion_trayecto foreign key (trayecto_id) references trayecto (id)
+);
@@ -0,0 +1,8 @@
+-- Índices para los patrones de acceso de trayectos y ubicaciones
+
+-- ubicaciones de un trayecto (o de un bloque de trayectos) ordenadas por fecha y hora.
+-- H2 mantiene además el índice de solo trayecto_id de la llave foránea
+create index idx_ubicacion_trayecto_fecha on ubicacion (trayecto_id, fecha_hora);
+
+-- trayectos en un rango de fechas (CU005) y listado por páginas en orden de inicio e id
+create index idx_trayecto_inicio on trayecto (fecha_hora_inicio, id);
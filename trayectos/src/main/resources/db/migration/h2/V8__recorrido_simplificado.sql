@@ -0,0 +1,3 @@
+-- Marca los trayectos cuyo recorrido codificado se guardó simplificado (ver
+-- Trayecto.recorridoSimplificado); los anteriores se guardaron completos
+alter table trayecto add column recorrido_simplificado boolean not null default false;
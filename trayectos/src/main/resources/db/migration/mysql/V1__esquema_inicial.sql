@@ -0,0 +1,29 @@
+-- Esquema inicial de trayectos y ubicaciones (equivalente al que generaba Hibernate)
+
+create table trayecto (
+    id binary(16) not null,
+    fecha_hora_inicio datetime(6),
+    fecha_hora_fin datetime(6),
+    duracion bigint,
+    distancia_total double,
+    numero_ubicaciones integer,
+    ultima_fecha_hora datetime(6),
+    ultima_longitud double,
+    ultima_latitud double,
+    velocidad_promedio double,
+    en_proceso bit not null,
+    propietario varchar(255),
+    propietario_activo varchar(255),
+    primary key (id),
+    constraint uk_trayecto_propietario_activo unique (propietario_activo)
+) engine=InnoDB;
+
+create table ubicacion (
+    id binary(16) not null,
+    fecha_hora datetime(6),
+    longitud double,
+    latitud double,
+    trayecto_id binary(16),
+    primary key (id),
+    constraint fk_ubicacion_trayecto foreign key (trayecto_id) references trayecto (id)
+) engine=InnoDB;
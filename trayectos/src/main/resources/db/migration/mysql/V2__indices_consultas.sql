@@ -0,0 +1,18 @@
+-- Índices para los patrones de acceso de trayectos y ubicaciones
+
+-- ubicaciones de un trayecto (o de un bloque de trayectos) ordenadas por fecha y hora.
+-- Cubre también la llave foránea, así que sobra el índice de solo trayecto_id que
+-- InnoDB creó para ella. InnoDB puede eliminarlo por su cuenta al crear este, así
+-- que solo se elimina si todavía existe
+create index idx_ubicacion_trayecto_fecha on ubicacion (trayecto_id, fecha_hora);
+
+set @indice_fk = (select count(*) from information_schema.statistics
+                   where table_schema = database() and table_name = 'ubicacion'
+                     and index_name = 'fk_ubicacion_trayecto');
+set @sentencia = if(@indice_fk > 0, 'drop index fk_ubicacion_trayecto on ubicacion', 'do 0');
+prepare eliminar_indice_fk from @sentencia;
+execute eliminar_indice_fk;
+deallocate prepare eliminar_indice_fk;
+
+-- trayectos en un rango de fechas (CU005) y listado por páginas en orden de inicio e id
+create index idx_trayecto_inicio on trayecto (fecha_hora_inicio, id);
@@ -0,0 +1,2 @@
+-- Ubicaciones de los trayectos finalizados codificadas en la fila del trayecto
+alter table trayecto add column recorrido_codificado mediumblob;
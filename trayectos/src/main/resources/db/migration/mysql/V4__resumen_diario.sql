@@ -0,0 +1,20 @@
+-- Totales de trayectos por día de inicio y propietario (CU005)
+create table resumen_diario (
+    dia date not null,
+    propietario varchar(255) not null,
+    cantidad bigint not null,
+    duracion_total bigint not null,
+    distancia_total double not null,
+    primary key (dia, propietario)
+) engine=InnoDB;
+
+-- resúmenes de los trayectos existentes; los trayectos en proceso se cuentan pero
+-- su duración y distancia se suman al finalizar (ver TrayectosService.finalizarTrayecto)
+insert into resumen_diario (dia, propietario, cantidad, duracion_total, distancia_total)
+select cast(fecha_hora_inicio as date), coalesce(propietario, 'sin-propietario'),
+       count(*),
+       coalesce(sum(case when en_proceso = false then duracion end), 0),
+       coalesce(sum(case when en_proceso = false then distancia_total end), 0)
+from trayecto
+where fecha_hora_inicio is not null
+group by cast(fecha_hora_inicio as date), coalesce(propietario, 'sin-propietario');
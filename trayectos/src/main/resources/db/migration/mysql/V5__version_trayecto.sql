@@ -0,0 +1,2 @@
+-- Versión de cada trayecto para el bloqueo optimista (ver Trayecto.version)
+alter table trayecto add column version bigint not null default 0;
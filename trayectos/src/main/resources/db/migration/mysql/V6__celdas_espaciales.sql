@@ -0,0 +1,27 @@
+-- Búsqueda de trayectos por área (ver CeldaEspacial)
+
+-- celda de la cuadrícula de 0,01 grados de cada ubicación: fila * 36000 + columna
+alter table ubicacion add column celda bigint;
+
+update ubicacion
+   set celda = least(greatest(floor((latitud + 90) / 0.01), 0), 17999) * 36000
+             + least(greatest(floor((longitud + 180) / 0.01), 0), 35999)
+ where latitud is not null and longitud is not null;
+
+-- las ubicaciones de un rango de celdas, con sus coordenadas, sin leer la tabla
+create index idx_ubicacion_celda on ubicacion (celda, trayecto_id, latitud, longitud);
+
+-- caja que contiene las ubicaciones de cada trayecto; los trayectos cuyas filas de
+-- ubicacion ya se borraron quedan sin caja
+alter table trayecto add column latitud_minima double;
+alter table trayecto add column latitud_maxima double;
+alter table trayecto add column longitud_minima double;
+alter table trayecto add column longitud_maxima double;
+
+update trayecto
+   set latitud_minima = (select min(u.latitud) from ubicacion u where u.trayecto_id = trayecto.id),
+       latitud_maxima = (select max(u.latitud) from ubicacion u where u.trayecto_id = trayecto.id),
+       longitud_minima = (select min(u.longitud) from ubicacion u where u.trayecto_id = trayecto.id),
+       longitud_maxima = (select max(u.longitud) from ubicacion u where u.trayecto_id = trayecto.id);
+
+create index idx_trayecto_caja on trayecto (latitud_minima, latitud_maxima, longitud_minima, longitud_maxima);
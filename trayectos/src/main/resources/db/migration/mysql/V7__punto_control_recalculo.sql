@@ -0,0 +1,9 @@
+-- Avance de cada recálculo de estadísticas de trayectos (ver RecalculoEstadisticas):
+-- el último id procesado, para continuar desde ahí si se interrumpe
+create table punto_control_recalculo (
+    nombre varchar(100) not null,
+    ultimo_id binary(16),
+    procesados bigint not null,
+    actualizado datetime(6) not null,
+    primary key (nombre)
+) engine=InnoDB;
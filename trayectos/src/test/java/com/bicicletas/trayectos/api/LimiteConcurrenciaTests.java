@@ -0,0 +1,69 @@
+package com.bicicletas.trayectos.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+
+// sin contexto de Spring: el filtro con un solo permiso y peticiones simuladas
+class LimiteConcurrenciaTests {
+
+    private final LimiteConcurrencia limite = new LimiteConcurrencia(1, 50, new SimpleMeterRegistry());
+
+    @Test
+    void doFilter_sinPermisoResponde503() throws Exception {
+        // -- Arrange: una petición asíncrona (como el resumen en flujo) toma el permiso
+        MockHttpServletRequest enFlujo = peticion();
+        limite.doFilter(enFlujo, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        // -- Act: otra petición espera el permiso mientras la primera sigue escribiendo
+        MockHttpServletResponse rechazada = new MockHttpServletResponse();
+        limite.doFilter(peticion(), rechazada, sinRespuesta());
+
+        // -- Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rechazada.getStatus(), "Dejó pasar una petición sin permiso");
+        assertEquals("1", rechazada.getHeader(HttpHeaders.RETRY_AFTER), "No indicó cuándo reintentar");
+    }
+
+    @Test
+    void doFilter_liberaUnaVezAlTerminarRespuestaAsincrona() throws Exception {
+        // -- Arrange: una petición asíncrona toma el permiso, se le agota el tiempo
+        // y termina (el contenedor avisa onTimeout y luego onComplete)
+        MockHttpServletRequest enFlujo = peticion();
+        limite.doFilter(enFlujo, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        MockAsyncContext contexto = (MockAsyncContext) enFlujo.getAsyncContext();
+        for (AsyncListener listener : contexto.getListeners()) {
+            listener.onTimeout(new AsyncEvent(contexto));
+        }
+        contexto.complete();
+
+        // -- Act: otra petición asíncrona toma el permiso liberado
+        MockHttpServletResponse siguiente = new MockHttpServletResponse();
+        limite.doFilter(peticion(), siguiente, (request, response) -> request.startAsync());
+        MockHttpServletResponse rechazada = new MockHttpServletResponse();
+        limite.doFilter(peticion(), rechazada, sinRespuesta());
+
+        // -- Assert: se liberó al terminar, y una sola vez
+        assertEquals(HttpStatus.OK.value(), siguiente.getStatus(), "No liberó el permiso al terminar la respuesta");
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rechazada.getStatus(), "Liberó el permiso más de una vez");
+    }
+
+    private static MockHttpServletRequest peticion() {
+        MockHttpServletRequest peticion = new MockHttpServletRequest("GET", "/trayectos/resumen");
+        peticion.setAsyncSupported(true);
+        return peticion;
+    }
+
+    private static FilterChain sinRespuesta() {
+        return (request, response) -> { };
+    }
+}
@@ -0,0 +1,102 @@
+package com.bicicletas.trayectos.dataAccess;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Revisa con EXPLAIN (H2) que las consultas de acceso a trayectos y ubicaciones
+// usan los índices creados por las migraciones y no recorren toda la tabla
+@SpringBootTest
+class IndicesTests {
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    // H2 no aprovecha la igualdad en trayecto_id para leer en orden de fecha_hora
+    // (eso lo hace MySQL con idx_ubicacion_trayecto_fecha), así que aquí se revisa
+    // que la búsqueda sea por índice y no recorra la tabla
+    @Test
+    void ubicacionesDeTrayecto_usanIndiceTrayecto() {
+
+        // -- Act: ubicaciones de un trayecto en orden (colección con @OrderBy)
+        String plan = explicar("select u.id, u.fecha_hora, u.longitud, u.latitud from ubicacion u "
+            + "where u.trayecto_id = ? order by u.fecha_hora");
+
+        // -- Assert
+        assertTrue(plan.contains(": TRAYECTO_ID = ?1 */"), "No busca las ubicaciones por índice:\n" + plan);
+        assertFalse(plan.contains("tableScan"), "Recorre toda la tabla de ubicaciones:\n" + plan);
+    }
+
+    @Test
+    void ubicacionesDeBloqueDeTrayectos_usanIndiceTrayecto() {
+
+        // -- Act: ubicaciones de un bloque de trayectos (@BatchSize)
+        String plan = explicar("select u.id, u.fecha_hora, u.trayecto_id from ubicacion u "
+            + "where u.trayecto_id in (?, ?, ?) order by u.fecha_hora");
+
+        // -- Assert
+        assertTrue(plan.contains(": TRAYECTO_ID IN(?1, ?2, ?3) */"), "No busca las ubicaciones por índice:\n" + plan);
+        assertFalse(plan.contains("tableScan"), "Recorre toda la tabla de ubicaciones:\n" + plan);
+    }
+
+    @Test
+    void trayectosEnRangoFechas_usanIndiceInicio() {
+
+        // -- Act: CU005, trayectos en un rango de fechas en orden de inicio e id
+        String plan = explicar("select t.id from trayecto t "
+            + "where t.fecha_hora_inicio >= ? and t.fecha_hora_inicio <= ? order by t.fecha_hora_inicio, t.id");
+
+        // -- Assert
+        assertTrue(plan.contains("IDX_TRAYECTO_INICIO"), "No usa el índice de fecha de inicio:\n" + plan);
+        assertTrue(plan.contains("/* index sorted */"), "Ordena los trayectos en lugar de leerlos en orden:\n" + plan);
+    }
+
+    @Test
+    void paginaSiguienteDeTrayectos_usaIndiceInicio() {
+
+        // -- Act: listado por páginas, continúa desde la llave del último trayecto
+        String plan = explicar("select t.id from trayecto t "
+            + "where t.fecha_hora_inicio >= ? and (t.fecha_hora_inicio > ? or t.id > ?) "
+            + "order by t.fecha_hora_inicio, t.id fetch first 20 rows only");
+
+        // -- Assert
+        assertTrue(plan.contains("IDX_TRAYECTO_INICIO"), "No usa el índice de fecha de inicio:\n" + plan);
+        assertTrue(plan.contains("/* index sorted */"), "Ordena los trayectos en lugar de leerlos en orden:\n" + plan);
+    }
+
+    @Test
+    void trayectoActivoDePropietario_usaIndiceUnico() {
+
+        // -- Act: CU001, verifica si el propietario tiene un trayecto activo
+        String plan = explicar("select t.id from trayecto t where t.propietario_activo = ?");
+
+        // -- Assert
+        assertTrue(plan.contains("UK_TRAYECTO_PROPIETARIO_ACTIVO"), "No usa el índice único de propietario activo:\n" + plan);
+    }
+
+    @Test
+    void ubicacionesEnCeldas_usanIndiceCelda() {
+
+        // -- Act: búsqueda por área, un rango de celdas por fila de la cuadrícula
+        String plan = explicar("select trayecto_id, latitud, longitud from ubicacion "
+            + "where celda between ? and ? or celda between ? and ?");
+
+        // -- Assert: el índice tiene el trayecto y las coordenadas, no se lee la tabla
+        assertTrue(plan.contains("IDX_UBICACION_CELDA"), "No usa el índice de celdas:\n" + plan);
+        assertFalse(plan.contains("tableScan"), "Recorre toda la tabla de ubicaciones:\n" + plan);
+    }
+
+    private String explicar(String consulta) {
+        return String.join("\n", jdbc.queryForList("explain " + consulta, String.class, parametros(consulta)));
+    }
+
+    // EXPLAIN necesita un valor para cada parámetro; el plan no depende de ellos
+    private static Object[] parametros(String consulta) {
+        int cantidad = (int) consulta.chars().filter(c -> c == '?').count();
+        return new Object[cantidad];
+    }
+}
@@ -0,0 +1,151 @@
+package com.bicicletas.trayectos.logica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+
+import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.ResumenTrayecto;
+
+import jakarta.transaction.Transactional;
+
+// a lo más 2 trayectos por búsqueda, para probar el límite sin crear miles
+@SpringBootTest(properties = "trayectos.area.resultados-maximos=2")
+class BuscarTrayectosPorAreaTests {
+
+    @Autowired
+    TrayectosService servicio;
+
+    @Autowired
+    UbicacionesRepository ubicaciones;
+
+    @Test
+    @Transactional
+    void consultarTrayectosEnCaja_exitoso() {
+        try {
+            // -- Arrange: un trayecto que cruza Bogotá y otro en Medellín
+            UUID bogota = servicio.iniciarTrayecto("bici-1", -74.10, 4.60);
+            servicio.registrarUbicacion(bogota, -74.08, 4.62);
+            servicio.finalizarTrayecto(bogota, -74.06, 4.64);
+
+            UUID medellin = servicio.iniciarTrayecto("bici-2", -75.56, 6.25);
+            servicio.finalizarTrayecto(medellin, -75.55, 6.26);
+
+            // -- Act: una caja que solo contiene la ubicación intermedia del primero
+            List<ResumenTrayecto> encontrados = servicio.consultarTrayectosEnCaja(4.615, 4.625, -74.085, -74.075);
+
+            // -- Assert
+            assertEquals(List.of(bogota), encontrados.stream().map(ResumenTrayecto::getId).toList(), "No encontró solo el trayecto que pasa por la caja");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectosCercaDe_filtraPorDistanciaExacta() {
+        try {
+            // -- Arrange: un trayecto que pasa a unos 330 m al norte de la estación
+            double latitudEstacion = 4.6000;
+            double longitudEstacion = -74.0800;
+            UUID trayectoId = servicio.iniciarTrayecto(-74.0800, 4.6030);
+            servicio.finalizarTrayecto(trayectoId, -74.0700, 4.6100);
+
+            // -- Act
+            List<ResumenTrayecto> aMedioKilometro = servicio.consultarTrayectosCercaDe(latitudEstacion, longitudEstacion, 0.5);
+            List<ResumenTrayecto> aCienMetros = servicio.consultarTrayectosCercaDe(latitudEstacion, longitudEstacion, 0.1);
+
+            // -- Assert: la ubicación está en una celda vecina a la de la estación en
+            // ambos casos; solo la distancia exacta la deja afuera con 100 m
+            assertEquals(1, aMedioKilometro.size(), "No encontró el trayecto a 330 m");
+            assertEquals(trayectoId, aMedioKilometro.get(0).getId());
+            assertEquals(0, aCienMetros.size(), "Encontró un trayecto a más de 100 m");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectosEnCaja_trayectoSinFilasDeUbicacion() {
+        TrayectosService destino = AopTestUtils.getTargetObject(servicio);
+        destino.conservarUbicaciones = false;
+
+        try {
+            // -- Arrange: al finalizar se borran las filas de ubicacion
+            UUID trayectoId = servicio.iniciarTrayecto(-74.10, 4.60);
+            servicio.registrarUbicacion(trayectoId, -74.08, 4.62);
+            servicio.finalizarTrayecto(trayectoId, -74.06, 4.64);
+            assertEquals(0, ubicaciones.count(), "No se borraron las ubicaciones");
+
+            // -- Act
+            List<ResumenTrayecto> dentro = servicio.consultarTrayectosEnCaja(4.615, 4.625, -74.085, -74.075);
+            // dentro de la caja del trayecto, pero lejos de sus ubicaciones
+            List<ResumenTrayecto> fuera = servicio.consultarTrayectosEnCaja(4.635, 4.638, -74.099, -74.095);
+
+            // -- Assert: se encuentra con el recorrido codificado
+            assertEquals(1, dentro.size(), "No encontró el trayecto compactado");
+            assertEquals(0, fuera.size(), "Encontró el trayecto solo porque la caja se cruza");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            destino.conservarUbicaciones = true;
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectosEnCaja_cajaInvalida() {
+        // -- Act / Assert
+        Exception e = assertThrows(Exception.class, () -> servicio.consultarTrayectosEnCaja(4.7, 4.6, -74.1, -74.0));
+        assertEquals("Las latitudes y longitudes mínimas no pueden ser mayores que las máximas", e.getMessage());
+
+        e = assertThrows(Exception.class, () -> servicio.consultarTrayectosCercaDe(4.6, -74.1, 0.0));
+        assertEquals("El radio debe ser mayor a cero", e.getMessage());
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectosEnCaja_areaDemasiadoGrande() {
+        // -- Act / Assert: más de un grado de lado (unos 111 km)
+        Exception e = assertThrows(Exception.class, () -> servicio.consultarTrayectosEnCaja(4.0, 5.5, -74.1, -74.0));
+        assertEquals("El área no puede medir más de 1.0 grados de lado", e.getMessage());
+
+        e = assertThrows(Exception.class, () -> servicio.consultarTrayectosCercaDe(4.6, -74.1, 100.0));
+        assertEquals("El área no puede medir más de 1.0 grados de lado", e.getMessage());
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectosEnCaja_demasiadosTrayectos() {
+        try {
+            // -- Arrange: tres trayectos que pasan por la misma caja
+            for (int i = 1; i <= 3; i++) {
+                UUID trayectoId = servicio.iniciarTrayecto("bici-" + i, -74.10, 4.60);
+                servicio.registrarUbicacion(trayectoId, -74.08, 4.62);
+                servicio.finalizarTrayecto(trayectoId, -74.06, 4.64);
+            }
+
+            // -- Act
+            servicio.consultarTrayectosEnCaja(4.615, 4.625, -74.085, -74.075);
+
+            fail("Debería haber fallado porque hay más trayectos que el máximo");
+
+        } catch (Exception e) {
+            // -- Assert
+            assertEquals("Hay más de 2 trayectos en el área, indique un área más pequeña", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.bicicletas.trayectos.logica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// cola pequeña y sin escrituras por intervalo: los lotes solo se escriben al vaciar
+@SpringBootTest(properties = {
+    "trayectos.ingesta.asincrona=true",
+    "trayectos.ingesta.capacidad=5",
+    "trayectos.ingesta.tamano-lote=100",
+    "trayectos.ingesta.intervalo-ms=60000"
+})
+class ColaUbicacionesTests {
+
+    @Autowired
+    ColaUbicaciones cola;
+
+    @MockitoSpyBean
+    TrayectosService servicio;
+
+    @Autowired
+    TrayectosRepository trayectos;
+
+    @Autowired
+    UbicacionesRepository ubicaciones;
+
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Autowired
+    MeterRegistry registro;
+
+    @Test
+    void encolar_seEscribeAlVaciar() {
+        try {
+            // -- Arrange
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+
+            // -- Act
+            assertTrue(cola.encolar(trayectoId, 27.1, 42.1), "No aceptó la ubicación");
+            assertTrue(cola.encolar(trayectoId, 27.2, 42.2), "No aceptó la ubicación");
+            assertTrue(cola.encolar(trayectoId, 27.3, 42.3), "No aceptó la ubicación");
+
+            // -- Assert: las ubicaciones aceptadas quedan en la cola hasta que se escribe el lote
+            assertEquals(1, trayectos.findEstadoById(trayectoId).get().getNumeroUbicaciones(), "Escribió las ubicaciones antes del lote");
+
+            cola.vaciar();
+
+            assertEquals(4, trayectos.findEstadoById(trayectoId).get().getNumeroUbicaciones(), "No escribió las ubicaciones encoladas");
+            assertEquals(27.3, trayectos.findEstadoById(trayectoId).get().getUltimaLongitud(), "La última ubicación no es la última encolada");
+            assertEquals(4, ubicaciones.count(), "No guardó las filas de ubicacion");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    void encolar_colaLlena() {
+        try {
+            // -- Arrange: llena la cola
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            for (int i = 0; i < 5; i++) {
+                assertTrue(cola.encolar(trayectoId, 27.0 + i / 10.0, 42.0), "No aceptó la ubicación");
+            }
+
+            // -- Act
+            boolean aceptada = cola.encolar(trayectoId, 28.0, 43.0);
+
+            // -- Assert: se rechaza sin perder las ya aceptadas, y al vaciar vuelve a aceptar
+            assertFalse(aceptada, "Aceptó una ubicación con la cola llena");
+
+            cola.vaciar();
+            assertEquals(6, trayectos.findEstadoById(trayectoId).get().getNumeroUbicaciones(), "Perdió ubicaciones aceptadas");
+            assertTrue(cola.encolar(trayectoId, 28.0, 43.0), "No aceptó la ubicación después de vaciar la cola");
+            cola.vaciar();
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    void encolar_trayectoNoActivo() {
+        try {
+            // -- Arrange
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.finalizarTrayecto(trayectoId, 27.1, 42.1);
+
+            // -- Act / Assert: se valida antes de encolar
+            assertThrows(Exception.class, () -> cola.encolar(trayectoId, 27.2, 42.2), "Aceptó una ubicación de un trayecto finalizado");
+            assertThrows(Exception.class, () -> cola.encolar(UUID.randomUUID(), 27.2, 42.2), "Aceptó una ubicación de un trayecto que no existe");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    void registrarUbicacionesEncoladas_descartaTrayectoFinalizado() {
+        try {
+            // -- Arrange: la ubicación se aceptó, pero el trayecto se finaliza antes de escribirla
+            UUID activoId = servicio.iniciarTrayecto("activo", 27.0, 42.0);
+            UUID finalizadoId = servicio.iniciarTrayecto("finalizado", 28.0, 43.0);
+            assertTrue(cola.encolar(activoId, 27.1, 42.1), "No aceptó la ubicación");
+            assertTrue(cola.encolar(finalizadoId, 28.1, 43.1), "No aceptó la ubicación");
+            servicio.finalizarTrayecto(finalizadoId, 28.2, 43.2);
+            double descartadas = registro.counter("trayectos.ingesta.descartadas").count();
+
+            // -- Act
+            cola.vaciar();
+
+            // -- Assert: el lote escribe las del trayecto activo y descarta las otras
+            assertEquals(2, trayectos.findEstadoById(activoId).get().getNumeroUbicaciones(), "No escribió la ubicación del trayecto activo");
+            assertEquals(2, trayectos.findEstadoById(finalizadoId).get().getNumeroUbicaciones(), "Cambió un trayecto finalizado");
+            assertEquals(descartadas + 1, registro.counter("trayectos.ingesta.descartadas").count(), "No contó la ubicación descartada");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    void vaciar_escribeLasDelTrayecto() {
+        try {
+            // -- Arrange
+            UUID trayectoId = servicio.iniciarTrayecto("vaciar", 27.0, 42.0);
+            UUID otroId = servicio.iniciarTrayecto("otro", 28.0, 43.0);
+            assertTrue(cola.encolar(trayectoId, 27.1, 42.1), "No aceptó la ubicación");
+            assertTrue(cola.encolar(otroId, 28.1, 43.1), "No aceptó la ubicación");
+            assertTrue(cola.encolar(trayectoId, 27.2, 42.2), "No aceptó la ubicación");
+
+            // -- Act: espera solo las del trayecto, sin esperar el intervalo
+            long inicio = System.nanoTime();
+            cola.vaciar(trayectoId);
+            long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+
+            // -- Assert
+            assertEquals(3, trayectos.findEstadoById(trayectoId).get().getNumeroUbicaciones(), "No escribió las ubicaciones del trayecto");
+            assertEquals(27.2, trayectos.findEstadoById(trayectoId).get().getUltimaLongitud(), "La última ubicación no es la última encolada");
+            assertTrue(milisegundos < 30_000, "Esperó el intervalo en lugar de escribir el lote: " + milisegundos + " ms");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    void cerrar_rechazaNuevasUbicaciones() {
+        try {
+            // -- Arrange
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            assertTrue(cola.encolar(trayectoId, 27.1, 42.1), "No aceptó la ubicación");
+
+            // -- Act: escribe las aceptadas y no acepta más hasta abrir
+            cola.cerrar(trayectoId);
+
+            // -- Assert
+            assertEquals(2, trayectos.findEstadoById(trayectoId).get().getNumeroUbicaciones(), "No escribió las ubicaciones del trayecto");
+            assertThrows(Exception.class, () -> cola.encolar(trayectoId, 27.2, 42.2), "Aceptó una ubicación de un trayecto que se está finalizando");
+
+            cola.abrir(trayectoId);
+            assertTrue(cola.encolar(trayectoId, 27.3, 42.3), "No aceptó la ubicación después de abrir el trayecto");
+            cola.vaciar(trayectoId);
+            assertEquals(3, trayectos.findEstadoById(trayectoId).get().getNumeroUbicaciones(), "No escribió la ubicación aceptada después de abrir");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    void escribir_descartaSoloElTrayectoQueFalla() {
+        try {
+            // -- Arrange: escribir las ubicaciones de un trayecto siempre falla
+            UUID activoId = servicio.iniciarTrayecto("activo", 27.0, 42.0);
+            UUID fallaId = servicio.iniciarTrayecto("falla", 28.0, 43.0);
+            doThrow(new Exception("Falla al escribir"))
+                .when(servicio).registrarUbicacionesEncoladas(argThat(lote -> lote.containsKey(fallaId)));
+            assertTrue(cola.encolar(activoId, 27.1, 42.1), "No aceptó la ubicación");
+            assertTrue(cola.encolar(fallaId, 28.1, 43.1), "No aceptó la ubicación");
+            assertTrue(cola.encolar(activoId, 27.2, 42.2), "No aceptó la ubicación");
+
+            // -- Act
+            cola.vaciar();
+
+            // -- Assert: las del otro trayecto del mismo lote se escriben
+            assertEquals(3, trayectos.findEstadoById(activoId).get().getNumeroUbicaciones(), "Descartó las ubicaciones de un trayecto que no falló");
+            assertEquals(1, trayectos.findEstadoById(fallaId).get().getNumeroUbicaciones(), "Escribió las ubicaciones del trayecto que falla");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+}
@@ -5,13 +5,20 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
 import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
 import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
 import com.bicicletas.trayectos.modelo.Trayecto;
@@ -31,6 +38,9 @@ class Cu001_IniciarTrayectoTests {
 	@Autowired
 	UbicacionesRepository ubicaciones;
 
+	@Autowired
+	ResumenesDiariosRepository resumenesDiarios;
+
 	@Test
 	@Transactional
 	void iniciarTrayecto_almacenaTrayectoYUbicacion() {
@@ -107,4 +117,158 @@ class Cu001_IniciarTrayectoTests {
 
 	}
 
+
+	@Test
+	@Transactional
+	void iniciarTrayectosDeDistintosPropietarios_exitoso() {
+
+		try {
+
+		// -- Arrange: Prepara la prueba
+
+			// inicia un trayecto para una bicicleta
+			UUID id1 = servicio.iniciarTrayecto("bici-1", 27.0, 42.0);
+
+
+		// -- Act: Ejecuta la operación que se debe probar		
+
+			// inicia un trayecto para otra bicicleta mientras el primero sigue activo
+			UUID id2 = servicio.iniciarTrayecto("bici-2", 28.0, 43.0);
+
+
+		// -- Assert: Revisa el resultado
+
+			assertTrue(trayectos.findById(id1).get().isEnProceso(), "El primer trayecto dejó de estar activo");
+			assertTrue(trayectos.findById(id2).get().isEnProceso(), "El segundo trayecto no aparece como activo");
+			assertEquals(id2, trayectos.findByPropietarioActivo("bici-2").get().getId(), "No encuentra el trayecto activo de la bicicleta");
+
+		} catch (Exception e) {
+			fail("Genero excepción y no debería", e);
+		}
+
+	}
+
+
+	@Test
+	@Transactional
+	void iniciarTrayectoDespuesDeFinalizar_exitoso() {
+
+		try {
+
+		// -- Arrange: Prepara la prueba
+
+			// inicia y finaliza un trayecto de una bicicleta
+			UUID id1 = servicio.iniciarTrayecto("bici-1", 27.0, 42.0);
+			servicio.finalizarTrayecto(id1, 27.1, 42.1);
+
+
+		// -- Act: Ejecuta la operación que se debe probar		
+
+			UUID id2 = servicio.iniciarTrayecto("bici-1", 28.0, 43.0);
+
+
+		// -- Assert: Revisa el resultado
+
+			assertEquals(id2, trayectos.findByPropietarioActivo("bici-1").get().getId(), "El trayecto activo no es el nuevo");
+			assertEquals("bici-1", trayectos.findById(id1).get().getPropietario(), "El trayecto finalizado perdió su propietario");
+
+		} catch (Exception e) {
+			fail("Genero excepción y no debería", e);
+		}
+
+	}
+
+
+	@Test
+	void iniciarTrayectosConcurrentesDeDistintosPropietarios_exitoso() throws Exception {
+
+		// sin @Transactional: cada hilo graba en su propia transacción
+		ExecutorService hilos = Executors.newFixedThreadPool(16);
+
+		try {
+
+		// -- Arrange: Prepara la prueba
+
+			// un trayecto por cada una de 200 bicicletas, todos al mismo tiempo
+			List<Callable<UUID>> tareas = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String propietario = "bici-" + i;
+				tareas.add(() -> servicio.iniciarTrayecto(propietario, 27.0, 42.0));
+			}
+
+
+		// -- Act: Ejecuta la operación que se debe probar		
+
+			int iniciados = 0;
+			for (Future<UUID> resultado : hilos.invokeAll(tareas)) {
+				try {
+					resultado.get();
+					iniciados++;
+				} catch (Exception e) {
+					fail("Genero excepción iniciando un trayecto y no debería", e);
+				}
+			}
+
+
+		// -- Assert: Revisa el resultado
+
+			assertEquals(200, iniciados, "No se iniciaron todos los trayectos");
+			assertEquals(200, trayectos.count(), "No se grabaron todos los trayectos");
+			assertEquals(200, ubicaciones.count(), "No se grabaron todas las ubicaciones iniciales");
+
+		} finally {
+			hilos.shutdown();
+			ubicaciones.deleteAllInBatch();
+			trayectos.deleteAllInBatch();
+			resumenesDiarios.deleteAllInBatch();
+		}
+
+	}
+
+
+	@Test
+	void iniciarTrayectosConcurrentesDelMismoPropietario_soloUnoExitoso() throws Exception {
+
+		// sin @Transactional: cada hilo graba en su propia transacción
+		ExecutorService hilos = Executors.newFixedThreadPool(16);
+
+		try {
+
+		// -- Arrange: Prepara la prueba
+
+			// 50 intentos de iniciar un trayecto para la misma bicicleta al mismo tiempo
+			List<Callable<UUID>> tareas = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				tareas.add(() -> servicio.iniciarTrayecto("bici-1", 27.0, 42.0));
+			}
+
+
+		// -- Act: Ejecuta la operación que se debe probar		
+
+			int iniciados = 0;
+			for (Future<UUID> resultado : hilos.invokeAll(tareas)) {
+				try {
+					resultado.get();
+					iniciados++;
+				} catch (Exception e) {
+					// ok: la bicicleta ya tenía un trayecto activo
+				}
+			}
+
+
+		// -- Assert: Revisa el resultado
+
+			assertEquals(1, iniciados, "Inició más de un trayecto activo para la misma bicicleta");
+			assertEquals(1, trayectos.count(), "Quedaron grabados trayectos que debían rechazarse");
+			assertEquals(1, ubicaciones.count(), "Quedaron grabadas ubicaciones de trayectos rechazados");
+
+		} finally {
+			hilos.shutdown();
+			ubicaciones.deleteAllInBatch();
+			trayectos.deleteAllInBatch();
+			resumenesDiarios.deleteAllInBatch();
+		}
+
+	}
+
 }
@@ -5,18 +5,33 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
 import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
 import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.CodificadorRecorrido;
+import com.bicicletas.trayectos.modelo.EstadoTrayecto;
 import com.bicicletas.trayectos.modelo.Trayecto;
 import com.bicicletas.trayectos.modelo.Ubicacion;
 
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 
 @SpringBootTest
@@ -31,6 +46,15 @@ class Cu002_RegistrarUbicacionTests {
     @Autowired
     UbicacionesRepository ubicaciones;
 
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
     @Test
     @Transactional
     void registrarUbicacion_exitoso() {
@@ -100,4 +124,342 @@ class Cu002_RegistrarUbicacionTests {
             // ok
         }
     }
+
+    @Test
+    @Transactional
+    void registrarUbicacion_costoConstante() {
+        Statistics estadisticas = entityManager.getEntityManagerFactory()
+            .unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+
+        try {
+            // -- Arrange: Crear un trayecto activo
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+
+            // -- Act: Mide el registro de la segunda ubicación y el de la ubicación 503
+            long sentenciasAlInicio = sentenciasPorRegistro(estadisticas, trayectoId);
+
+            for (int i = 0; i < 500; i++) {
+                servicio.registrarUbicacion(trayectoId, 27.0 + i * 0.0001, 42.0);
+            }
+
+            long sentenciasDespues = sentenciasPorRegistro(estadisticas, trayectoId);
+
+            // -- Assert: El costo no crece con la cantidad de ubicaciones del trayecto
+            assertEquals(sentenciasAlInicio, sentenciasDespues, "El número de sentencias SQL crece con el tamaño del trayecto");
+            assertTrue(sentenciasDespues <= 3, "Registrar una ubicación usa más sentencias SQL de las necesarias");
+            assertEquals(0, estadisticas.getEntityLoadCount(), "Cargó el trayecto para registrar la ubicación");
+            assertEquals(0, estadisticas.getCollectionLoadCount(), "Cargó la lista de ubicaciones del trayecto");
+            assertEquals(503, ubicaciones.count(), "No se grabaron todas las ubicaciones");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
+
+    // registra una ubicación con la sesión vacía y retorna cuántas sentencias SQL usó
+    private long sentenciasPorRegistro(Statistics estadisticas, UUID trayectoId) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+
+        servicio.registrarUbicacion(trayectoId, 28.0, 43.0);
+        entityManager.flush();
+
+        return estadisticas.getPrepareStatementCount();
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicacion_acumulaDistancia() {
+        try {
+            // -- Arrange: Crear un trayecto activo
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+
+            // -- Act: Registra dos ubicaciones
+            servicio.registrarUbicacion(trayectoId, 27.1, 42.1);
+            servicio.registrarUbicacion(trayectoId, 27.2, 42.2);
+
+            // -- Assert: El trayecto en curso tiene la distancia y la última ubicación al día
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertEquals(t.calcularDistanciaTotal(), t.getDistanciaTotal(), 1e-9, "La distancia acumulada no coincide con la calculada");
+
+            EstadoTrayecto estado = servicio.consultarEstadoTrayecto(trayectoId);
+            assertTrue(estado.isEnProceso(), "El trayecto no aparece como activo");
+            assertEquals(3, estado.getNumeroUbicaciones(), "No acumuló el número de ubicaciones");
+            assertEquals(t.getDistanciaTotal(), estado.getDistanciaTotal(), 1e-9, "El estado no tiene la distancia acumulada");
+            assertEquals(27.2, estado.getUltimaLongitud(), "No guardó la última longitud");
+            assertEquals(42.2, estado.getUltimaLatitud(), "No guardó la última latitud");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_loteExitoso() {
+        try {
+            // -- Arrange: Crear un trayecto activo y un lote de ubicaciones desordenado
+            LocalDateTime inicio = LocalDateTime.now().minusMinutes(1);
+            UUID trayectoId = iniciarTrayectoEn(inicio, 27.0, 42.0);
+            List<Ubicacion> lote = List.of(
+                ubicacion(inicio.plusSeconds(20), 27.3, 42.3),
+                ubicacion(inicio.plusSeconds(10), 27.2, 42.2),
+                ubicacion(inicio.plusSeconds(30), 27.4, 42.4)
+            );
+
+            // -- Act: Registra todas las ubicaciones en una sola llamada
+            int registradas = servicio.registrarUbicaciones(trayectoId, lote);
+
+            // -- Assert: Revisa el resultado
+            assertEquals(3, registradas, "No registró todas las ubicaciones del lote");
+            assertEquals(4, ubicaciones.count(), "No grabó las ubicaciones en la base de datos");
+
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertEquals(4, t.getUbicaciones().size(), "No se agregaron las ubicaciones al trayecto");
+
+            // las ubicaciones quedan en el orden de la fecha y hora del dispositivo
+            assertEquals(inicio.plusSeconds(10), t.getUbicaciones().get(1).getFechaHora(), "No conservó la fecha y hora del dispositivo");
+            assertEquals(27.2, t.getUbicaciones().get(1).getLongitud(), "No ordenó las ubicaciones por fecha y hora");
+            assertEquals(27.4, t.getUbicaciones().get(3).getLongitud(), "No ordenó las ubicaciones por fecha y hora");
+
+            // la distancia se acumula en el orden de la fecha y hora del dispositivo
+            assertEquals(4, t.getNumeroUbicaciones(), "No acumuló el número de ubicaciones");
+            assertEquals(27.4, t.getUltimaLongitud(), "La última ubicación no es la más reciente del lote");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_idsOrdenados() {
+        try {
+            // -- Arrange: Crear un trayecto activo y un lote de ubicaciones
+            LocalDateTime inicio = LocalDateTime.now().minusMinutes(1);
+            UUID trayectoId = iniciarTrayectoEn(inicio, 27.0, 42.0);
+            List<Ubicacion> lote = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                lote.add(ubicacion(inicio.plusSeconds(i), 27.0 + i * 0.001, 42.0));
+            }
+
+            // -- Act
+            servicio.registrarUbicaciones(trayectoId, lote);
+
+            // -- Assert: los ids son UUID versión 7 y crecen en el orden de inserción
+            assertEquals(7, trayectoId.version(), "El id del trayecto no es un UUID versión 7");
+
+            List<Ubicacion> registradas = trayectos.findById(trayectoId).get().getUbicaciones();
+            for (int i = 1; i < registradas.size(); i++) {
+                UUID anterior = registradas.get(i - 1).getId();
+                UUID actual = registradas.get(i).getId();
+                assertEquals(7, actual.version(), "El id de la ubicación no es un UUID versión 7");
+                assertTrue(anterior.compareTo(actual) < 0, "Los ids de las ubicaciones no crecen en el orden de inserción");
+            }
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_loteVacio() {
+        try {
+            // -- Arrange: Crear un trayecto activo
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+
+            // -- Act: Intenta registrar un lote sin ubicaciones
+            servicio.registrarUbicaciones(trayectoId, List.of());
+
+            fail("Debería haber fallado porque el lote está vacío");
+
+        } catch (Exception e) {
+            // -- Assert
+            assertEquals("No se recibieron ubicaciones para registrar", e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_loteTrayectoNoActivo() {
+        try {
+            // -- Arrange: Crear y finalizar un trayecto
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.finalizarTrayecto(trayectoId, 27.1, 42.1);
+
+            // -- Act: Intenta registrar un lote en un trayecto no activo
+            servicio.registrarUbicaciones(trayectoId, List.of(ubicacion(LocalDateTime.now(), 28.0, 43.0)));
+
+            fail("Debería haber fallado porque el trayecto no está activo");
+
+        } catch (Exception e) {
+            // -- Assert
+            assertEquals("El trayecto no está activo", e.getMessage());
+            assertEquals(2, ubicaciones.count(), "Grabó ubicaciones de un trayecto no activo");
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_loteAnteriorAUltimaUbicacion() {
+        try {
+            // -- Arrange: Crear un trayecto con una ubicación registrada hace 30 segundos
+            LocalDateTime inicio = LocalDateTime.now().minusMinutes(1);
+            UUID trayectoId = iniciarTrayectoEn(inicio, 27.0, 42.0);
+            servicio.registrarUbicaciones(trayectoId, List.of(ubicacion(inicio.plusSeconds(30), 27.1, 42.1)));
+
+            // -- Act: Intenta registrar un lote con una ubicación anterior a esa
+            servicio.registrarUbicaciones(trayectoId, List.of(
+                ubicacion(inicio.plusSeconds(40), 27.2, 42.2),
+                ubicacion(inicio.plusSeconds(20), 27.3, 42.3)));
+
+            fail("Debería haber fallado porque una ubicación es anterior a la última registrada");
+
+        } catch (Exception e) {
+            // -- Assert: no se registra ninguna ubicación del lote
+            assertEquals("Las ubicaciones no pueden ser anteriores a la última ubicación registrada del trayecto", e.getMessage());
+            assertEquals(2, ubicaciones.count(), "Grabó ubicaciones de un lote rechazado");
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_loteFuturo() {
+        try {
+            // -- Arrange: Crear un trayecto activo
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+
+            // -- Act: Intenta registrar una ubicación con fecha y hora futura
+            servicio.registrarUbicaciones(trayectoId, List.of(ubicacion(LocalDateTime.now().plusMinutes(5), 27.1, 42.1)));
+
+            fail("Debería haber fallado porque la ubicación tiene una fecha y hora futura");
+
+        } catch (Exception e) {
+            // -- Assert
+            assertEquals("Las ubicaciones no pueden tener una fecha y hora futura", e.getMessage());
+            assertEquals(1, ubicaciones.count(), "Grabó una ubicación futura");
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_loteExcedeMaximo() {
+        try {
+            // -- Arrange: Crear un trayecto activo y un lote de 1.001 ubicaciones
+            LocalDateTime inicio = LocalDateTime.now().minusHours(1);
+            UUID trayectoId = iniciarTrayectoEn(inicio, 27.0, 42.0);
+            List<Ubicacion> lote = new ArrayList<>();
+            for (int i = 1; i <= 1001; i++) {
+                lote.add(ubicacion(inicio.plusSeconds(i), 27.0 + i * 0.0001, 42.0));
+            }
+
+            // -- Act
+            servicio.registrarUbicaciones(trayectoId, lote);
+
+            fail("Debería haber fallado porque el lote supera el máximo de ubicaciones");
+
+        } catch (Exception e) {
+            // -- Assert
+            assertEquals("No se pueden registrar más de 1000 ubicaciones en un lote", e.getMessage());
+            assertEquals(1, ubicaciones.count(), "Grabó ubicaciones de un lote rechazado");
+        }
+    }
+
+    @Test
+    void registrarUbicacion_concurrenteConFinalizar() {
+        try {
+            // -- Arrange: un trayecto activo y cientos de ubicaciones en paralelo,
+            // con la finalización a mitad de camino
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            int total = 300;
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<Boolean>> registros = new ArrayList<>();
+
+            // -- Act
+            ExecutorService hilos = Executors.newFixedThreadPool(16);
+            try {
+                Future<?> finalizacion = null;
+                for (int i = 0; i < total; i++) {
+                    double desplazamiento = i / 10000.0;
+                    registros.add(hilos.submit(() -> {
+                        salida.await();
+                        try {
+                            servicio.registrarUbicacion(trayectoId, 27.0 + desplazamiento, 42.0 + desplazamiento);
+                            return true;
+                        } catch (Exception e) {
+                            // se rechaza porque el trayecto ya finalizó o porque se agotaron
+                            // los intentos; en ambos casos quien la envió recibe el error
+                            assertTrue(e.getMessage().equals("El trayecto no está activo")
+                                || e.getMessage().startsWith("El trayecto fue modificado por otra operación"), e.getMessage());
+                            return false;
+                        }
+                    }));
+                    if (i == total / 2) {
+                        finalizacion = hilos.submit(() -> {
+                            salida.await();
+                            servicio.finalizarTrayecto(trayectoId, 28.0, 43.0);
+                            return null;
+                        });
+                    }
+                }
+                salida.countDown();
+
+                finalizacion.get();
+            } finally {
+                hilos.shutdown();
+                hilos.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            int aceptadas = 0;
+            for (Future<Boolean> registro : registros) {
+                if (registro.get()) {
+                    aceptadas++;
+                }
+            }
+
+            // -- Assert: toda ubicación aceptada quedó en el trayecto, y ninguna se
+            // guardó después de finalizarlo
+            Trayecto trayecto = trayectos.findById(trayectoId).get();
+            int esperadas = aceptadas + 2;
+            assertFalse(trayecto.isEnProceso(), "El trayecto no quedó finalizado");
+            assertEquals(esperadas, trayecto.getNumeroUbicaciones(), "El número de ubicaciones no coincide con las aceptadas");
+            assertEquals(esperadas, ubicaciones.count(), "Se perdieron ubicaciones aceptadas o se guardaron rechazadas");
+            assertEquals(esperadas, CodificadorRecorrido.decodificar(trayecto.getRecorridoCodificado()).getTamano(), "El recorrido final no tiene todas las ubicaciones aceptadas");
+            for (Ubicacion guardada : ubicaciones.findAll()) {
+                assertFalse(guardada.getFechaHora().isAfter(trayecto.getFechaHoraFin()), "Se guardó una ubicación después de finalizar");
+            }
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    // inicia un trayecto y lo lleva a una fecha y hora pasada, para registrar
+    // ubicaciones tomadas por el dispositivo después del inicio y antes de ahora
+    private UUID iniciarTrayectoEn(LocalDateTime inicio, Double longitud, Double latitud)
+        throws Exception
+    {
+        UUID trayectoId = servicio.iniciarTrayecto(longitud, latitud);
+        entityManager.flush();
+        jdbc.update("update trayecto set fecha_hora_inicio = ?, ultima_fecha_hora = ? where id = ?", inicio, inicio, trayectoId);
+        jdbc.update("update ubicacion set fecha_hora = ? where trayecto_id = ?", inicio, trayectoId);
+        entityManager.clear();
+        return trayectoId;
+    }
+
+    private Ubicacion ubicacion(LocalDateTime fechaHora, Double longitud, Double latitud) {
+        Ubicacion ubicacion = new Ubicacion();
+        ubicacion.setFechaHora(fechaHora);
+        ubicacion.setLongitud(longitud);
+        ubicacion.setLatitud(latitud);
+        return ubicacion;
+    }
 }
\ No newline at end of file
@@ -6,18 +6,26 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
 
 import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
 import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.CodificadorRecorrido;
+import com.bicicletas.trayectos.modelo.Recorrido;
 import com.bicicletas.trayectos.modelo.Trayecto;
 import com.bicicletas.trayectos.modelo.Ubicacion;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.transaction.Transactional;
 
 @SpringBootTest
@@ -32,6 +40,9 @@ class Cu003_FinalizarTrayectoTests {
     @Autowired
     UbicacionesRepository ubicaciones;
 
+    @Autowired
+    MeterRegistry registro;
+
     @Test
     @Transactional
     void finalizarTrayecto_exitoso() {
@@ -53,6 +64,12 @@ class Cu003_FinalizarTrayectoTests {
             assertNotNull(t.getFechaHoraFin(), "No se registró la fecha de finalización");
             assertTrue(t.getDuracion() > 0, "No se calculó la duración del trayecto");
 
+            // Verificar las estadísticas guardadas al finalizar
+            assertNotNull(t.getDistanciaTotal(), "No se guardó la distancia total");
+            assertEquals(t.calcularDistanciaTotal(), t.getDistanciaTotal(), 1e-9, "La distancia guardada no coincide con la calculada");
+            assertEquals(2, t.getNumeroUbicaciones(), "No se guardó el número de ubicaciones");
+            assertTrue(t.getVelocidadPromedio() > 0, "No se calculó la velocidad promedio");
+
             assertEquals(2, t.getUbicaciones().size(), "No se agregó la ubicación final");
             
             // Verificar la última ubicación agregada
@@ -65,6 +82,100 @@ class Cu003_FinalizarTrayectoTests {
         }
     }
 
+    @Test
+    @Transactional
+    void finalizarTrayecto_compactaRecorrido() {
+        try {
+            // -- Arrange: Crear un trayecto activo con varias ubicaciones
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            for (int i = 1; i <= 100; i++) {
+                servicio.registrarUbicacion(trayectoId, 27.0 + i * 0.0001, 42.0 - i * 0.0002);
+            }
+
+            // -- Act
+            servicio.finalizarTrayecto(trayectoId, 27.02, 41.98);
+
+            // -- Assert: el recorrido codificado tiene todas las ubicaciones, en orden
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertNotNull(t.getRecorridoCodificado(), "No se guardó el recorrido codificado");
+
+            Recorrido recorrido = CodificadorRecorrido.decodificar(t.getRecorridoCodificado());
+            List<Ubicacion> esperadas = t.getUbicaciones();
+            assertEquals(102, recorrido.getTamano(), "El recorrido no tiene todas las ubicaciones");
+            for (int i = 0; i < esperadas.size(); i++) {
+                assertEquals(esperadas.get(i).getLongitud(), recorrido.getLongitudes()[i], 1e-6, "La longitud no coincide");
+                assertEquals(esperadas.get(i).getLatitud(), recorrido.getLatitudes()[i], 1e-6, "La latitud no coincide");
+            }
+            assertEquals(t.getDistanciaTotal(), recorrido.calcularDistanciaTotal(), 1e-3, "La distancia del recorrido no coincide");
+            assertTrue(t.getRecorridoCodificado().length < 102 * 12, "El recorrido codificado no es compacto");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void finalizarTrayecto_sinConservarUbicaciones() {
+        TrayectosService destino = AopTestUtils.getTargetObject(servicio);
+        destino.conservarUbicaciones = false;
+
+        try {
+            // -- Arrange: Crear un trayecto activo con varias ubicaciones
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(trayectoId, 27.1, 42.1);
+
+            // -- Act
+            servicio.finalizarTrayecto(trayectoId, 27.2, 42.2);
+
+            // -- Assert: se borraron las ubicaciones, pero el trayecto se sigue consultando
+            assertEquals(0, ubicaciones.count(), "No se borraron las ubicaciones");
+
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertFalse(t.isEnProceso(), "El trayecto sigue apareciendo como activo");
+            assertEquals(3, t.getNumeroUbicaciones(), "No se guardó el número de ubicaciones");
+
+            String consulta = servicio.consultarTrayecto(trayectoId);
+            assertTrue(consulta.contains("(27.1, 42.1)"), "No muestra la ubicación intermedia");
+            assertEquals(3, servicio.consultarRecorrido(trayectoId).getTamano(), "El recorrido no tiene todas las ubicaciones");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            destino.conservarUbicaciones = true;
+        }
+    }
+
+    @Test
+    @Transactional
+    void finalizarTrayecto_simplificaRecorrido() {
+        TrayectosService destino = AopTestUtils.getTargetObject(servicio);
+        destino.toleranciaMetros = 5;
+
+        try {
+            // -- Arrange: un trayecto en línea recta
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            for (int i = 1; i < 20; i++) {
+                servicio.registrarUbicacion(trayectoId, 27.0 + i * 0.001, 42.0);
+            }
+
+            // -- Act
+            servicio.finalizarTrayecto(trayectoId, 27.02, 42.0);
+
+            // -- Assert: se codifican los extremos, y las estadísticas son las de todas las ubicaciones
+            Trayecto t = trayectos.findById(trayectoId).get();
+            Recorrido recorrido = CodificadorRecorrido.decodificar(t.getRecorridoCodificado());
+            assertEquals(2, recorrido.getTamano(), "No simplificó el recorrido codificado");
+            assertEquals(21, t.getNumeroUbicaciones(), "El número de ubicaciones no es el de todas");
+            assertEquals(t.getDistanciaTotal(), recorrido.calcularDistanciaTotal(), t.getDistanciaTotal() * 0.01, "La distancia del recorrido simplificado no está dentro del error");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            destino.toleranciaMetros = 0;
+        }
+    }
+
     @Test
     @Transactional
     void finalizarTrayecto_noExiste() {
@@ -101,4 +212,55 @@ class Cu003_FinalizarTrayectoTests {
             assertEquals("No se puede agregar una ubicación a un trayecto no activo", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @Transactional
+    void finalizarTrayecto_registraMetricas() {
+        try {
+            // -- Arrange: Crear un trayecto activo y leer las métricas actuales
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(trayectoId, 27.001, 42.001);
+
+            DistributionSummary ubicacionesPorTrayecto = registro.get("trayectos.ubicaciones").summary();
+            long trayectosAntes = ubicacionesPorTrayecto.count();
+            double ubicacionesAntes = ubicacionesPorTrayecto.totalAmount();
+            long finalizacionesAntes = finalizaciones();
+            double rechazosAntes = rechazosNoActivo();
+
+            // -- Act
+            servicio.finalizarTrayecto(trayectoId, 27.002, 42.002);
+
+            // -- Assert: se midió la latencia y se registró el número de ubicaciones
+            assertEquals(finalizacionesAntes + 1, finalizaciones(), "No se midió la latencia de CU003");
+            assertEquals(trayectosAntes + 1, ubicacionesPorTrayecto.count(), "No se registró el trayecto finalizado");
+            assertEquals(ubicacionesAntes + 3, ubicacionesPorTrayecto.totalAmount(), 1e-9, "No se registraron sus ubicaciones");
+
+            // -- Act: un segundo intento es rechazado
+            try {
+                servicio.finalizarTrayecto(trayectoId, 27.003, 42.003);
+                fail("Debería haber fallado porque el trayecto ya estaba finalizado");
+            } catch (Exception e) {
+                // ok
+            }
+
+            // -- Assert: se contó el rechazo
+            assertEquals(rechazosAntes + 1, rechazosNoActivo(), 1e-9, "No se contó el rechazo");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    // finalizaciones medidas por @Timed (exitosas o no)
+    private long finalizaciones() {
+        return registro.find(MetricasTrayectos.CASOS_USO).tag("caso", "CU003").timers().stream()
+            .mapToLong(Timer::count)
+            .sum();
+    }
+
+    private double rechazosNoActivo() {
+        Counter rechazos = registro.find(MetricasTrayectos.RECHAZOS)
+            .tag("motivo", MetricasTrayectos.TRAYECTO_NO_ACTIVO).counter();
+        return rechazos != null ? rechazos.count() : 0;
+    }
+}
@@ -5,15 +5,25 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
 import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
 import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.Recorrido;
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.bicicletas.trayectos.modelo.Ubicacion;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 
 @SpringBootTest
@@ -28,6 +38,15 @@ class Cu004_ConsultarTrayectoTests {
     @Autowired
     UbicacionesRepository ubicaciones;
 
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    MeterRegistry registro;
+
     @Test
     @Transactional
     void consultarTrayecto_exitoso() {
@@ -60,6 +79,191 @@ class Cu004_ConsultarTrayectoTests {
         }
     }
 
+    @Test
+    @Transactional
+    void consultarRecorrido_coincideConUbicaciones() {
+        try {
+            // -- Arrange: Crear y finalizar un trayecto con varias ubicaciones
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            for (int i = 1; i <= 20; i++) {
+                servicio.registrarUbicacion(trayectoId, 27.0 + i * 0.001, 42.0 + i * 0.0005);
+            }
+            servicio.finalizarTrayecto(trayectoId, 27.03, 42.01);
+
+            // -- Act
+            Recorrido recorrido = servicio.consultarRecorrido(trayectoId);
+
+            // -- Assert: mismas ubicaciones, en el mismo orden, que la entidad
+            Trayecto trayecto = trayectos.findById(trayectoId).get();
+            List<Ubicacion> esperadas = trayecto.getUbicaciones();
+            assertEquals(esperadas.size(), recorrido.getTamano(), "No tiene todas las ubicaciones");
+            for (int i = 0; i < esperadas.size(); i++) {
+                assertEquals(esperadas.get(i).getLongitud(), recorrido.getLongitudes()[i], "La longitud no coincide");
+                assertEquals(esperadas.get(i).getLatitud(), recorrido.getLatitudes()[i], "La latitud no coincide");
+                // la base de datos guarda microsegundos (redondeados)
+                long diferencia = ChronoUnit.MICROS.between(esperadas.get(i).getFechaHora(), recorrido.fechaHora(i));
+                assertTrue(Math.abs(diferencia) <= 1, "La fecha y hora no coincide");
+            }
+            assertEquals(trayecto.getDistanciaTotal(), recorrido.calcularDistanciaTotal(), 1e-9, "La distancia no coincide");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarRecorrido_simplificado() {
+        try {
+            // -- Arrange: un trayecto en línea recta guardado completo
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            for (int i = 1; i < 10; i++) {
+                servicio.registrarUbicacion(trayectoId, 27.0 + i * 0.001, 42.0);
+            }
+            servicio.finalizarTrayecto(trayectoId, 27.01, 42.0);
+
+            // -- Act
+            Recorrido completo = servicio.consultarRecorrido(trayectoId, null);
+            Recorrido simplificado = servicio.consultarRecorrido(trayectoId, 5.0);
+
+            // -- Assert
+            assertEquals(11, completo.getTamano(), "Sin tolerancia no retorna todas las ubicaciones");
+            assertEquals(2, simplificado.getTamano(), "No simplificó el recorrido");
+            assertEquals(2, simplificado.getLongitudes().length, "No recortó los arreglos");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayecto_leeSoloLaFila() {
+        Statistics estadisticas = entityManager.getEntityManagerFactory()
+            .unwrap(SessionFactory.class).getStatistics();
+
+        try {
+            // -- Arrange: Crear y finalizar un trayecto con muchas ubicaciones
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            for (int i = 1; i <= 200; i++) {
+                servicio.registrarUbicacion(trayectoId, 27.0 + i * 0.0001, 42.0);
+            }
+            servicio.finalizarTrayecto(trayectoId, 27.03, 42.0);
+            entityManager.flush();
+            entityManager.clear();
+
+            estadisticas.clear();
+            estadisticas.setStatisticsEnabled(true);
+
+            // -- Act
+            String resultado = servicio.consultarTrayecto(trayectoId);
+
+            // -- Assert: una sola consulta y ninguna ubicación cargada
+            assertEquals(202, resultado.lines().filter(linea -> linea.startsWith("    ")).count(), "No muestra todas las ubicaciones");
+            assertEquals(1, estadisticas.getPrepareStatementCount(), "Consultar un trayecto finalizado usa más de una consulta");
+            assertEquals(0, estadisticas.getCollectionLoadCount(), "Cargó la lista de ubicaciones del trayecto");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayecto_desdeCache() {
+        Statistics estadisticas = entityManager.getEntityManagerFactory()
+            .unwrap(SessionFactory.class).getStatistics();
+
+        try {
+            // -- Arrange: Crear, finalizar y consultar una vez un trayecto
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(trayectoId, 27.1, 42.1);
+            servicio.finalizarTrayecto(trayectoId, 27.2, 42.2);
+            String primera = servicio.consultarTrayecto(trayectoId);
+            double aciertosAntes = aciertosCache();
+
+            estadisticas.clear();
+            estadisticas.setStatisticsEnabled(true);
+
+            // -- Act
+            String segunda = servicio.consultarTrayecto(trayectoId);
+
+            // -- Assert: la misma respuesta, sin consultas a la base de datos
+            assertEquals(primera, segunda, "La respuesta desde la caché es distinta");
+            assertEquals(0, estadisticas.getPrepareStatementCount(), "Consultó la base de datos teniendo el trayecto en caché");
+            assertEquals(aciertosAntes + 1, aciertosCache(), 1e-9, "No se contó el acierto de la caché");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
+
+    // sin @Transactional: la caché se llena cuando confirma la transacción de CU003
+    @Test
+    void finalizarTrayecto_guardaEnCache() {
+        Statistics estadisticas = entityManager.getEntityManagerFactory()
+            .unwrap(SessionFactory.class).getStatistics();
+
+        try {
+            // -- Arrange: Crear y finalizar un trayecto
+            UUID trayectoId = servicio.iniciarTrayecto("bici-cache", 27.0, 42.0);
+            servicio.registrarUbicacion(trayectoId, 27.1, 42.1);
+            servicio.finalizarTrayecto(trayectoId, 27.2, 42.2);
+
+            estadisticas.clear();
+            estadisticas.setStatisticsEnabled(true);
+
+            // -- Act
+            String resultado = servicio.consultarTrayecto(trayectoId);
+
+            // -- Assert
+            assertTrue(resultado.contains("(27.1, 42.1)"), "No muestra la ubicación intermedia");
+            assertEquals(0, estadisticas.getPrepareStatementCount(), "El trayecto finalizado no quedó en la caché");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+            ubicaciones.deleteAllInBatch();
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayecto_activoNoSeGuardaEnCache() {
+        try {
+            // -- Arrange: un trayecto activo que se intenta consultar
+            UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+            try {
+                servicio.consultarTrayecto(trayectoId);
+                fail("Debería haber fallado porque el trayecto no ha finalizado");
+            } catch (Exception e) {
+                // ok
+            }
+
+            // -- Act: lo finaliza y lo consulta
+            servicio.finalizarTrayecto(trayectoId, 27.2, 42.2);
+            String resultado = servicio.consultarTrayecto(trayectoId);
+
+            // -- Assert: muestra el trayecto finalizado
+            assertTrue(resultado.contains("Fecha/hora fin:"), "Respondió con un trayecto en proceso");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    private double aciertosCache() {
+        return registro.get("cache.gets").tag("cache", "trayectos.finalizados").tag("result", "hit")
+            .functionCounter().count();
+    }
+
     @Test
     @Transactional
     void consultarTrayecto_noExiste() {
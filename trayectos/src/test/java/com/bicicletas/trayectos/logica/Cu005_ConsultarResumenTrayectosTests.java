@@ -5,16 +5,24 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.StringWriter;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
 import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
 import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.TotalesTrayectos;
 
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 
 @SpringBootTest
@@ -29,6 +37,12 @@ class Cu005_ConsultarResumenTrayectosTests {
     @Autowired
     UbicacionesRepository ubicaciones;
 
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Autowired
+    EntityManager entityManager;
+
     @Test
     @Transactional
     void consultarResumenTrayectos_exitoso() {
@@ -68,6 +82,101 @@ class Cu005_ConsultarResumenTrayectosTests {
         }
     }
 
+    @Test
+    @Transactional
+    void consultarResumenTrayectos_totales() {
+        try {
+            // -- Arrange: Crear dos trayectos finalizados
+            UUID trayecto1Id = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(trayecto1Id, 27.1, 42.1);
+            servicio.finalizarTrayecto(trayecto1Id, 27.2, 42.2);
+
+            UUID trayecto2Id = servicio.iniciarTrayecto(28.0, 43.0);
+            servicio.finalizarTrayecto(trayecto2Id, 28.1, 43.1);
+
+            double distanciaEsperada = trayectos.findById(trayecto1Id).get().getDistanciaTotal()
+                + trayectos.findById(trayecto2Id).get().getDistanciaTotal();
+
+            LocalDateTime inicio = LocalDateTime.now().minusDays(1);
+            LocalDateTime fin = LocalDateTime.now().plusDays(1);
+
+            // -- Act: Ejecuta la operación que se debe probar
+            String resultado = servicio.consultarResumenTrayectos(inicio, fin);
+
+            // -- Assert: Los totales del período salen antes del detalle de los trayectos
+            String encabezado = resultado.substring(0, resultado.indexOf("----------------------------------------"));
+            assertTrue(encabezado.contains("Duración total:"), "No muestra la duración total del período");
+            assertTrue(encabezado.contains("Distancia total: " + String.format("%.2f", distanciaEsperada) + " km"), "No muestra la distancia total del período");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarResumenTrayectos_resumenesDiarios() {
+        try {
+            // -- Arrange: Un trayecto finalizado y otro activo
+            UUID trayecto1Id = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(trayecto1Id, 27.1, 42.1);
+            servicio.finalizarTrayecto(trayecto1Id, 27.2, 42.2);
+
+            servicio.iniciarTrayecto("otro-propietario", 28.0, 43.0);
+
+            LocalDate hoy = LocalDate.now();
+
+            // -- Act: Totales del día desde los resúmenes y desde los trayectos
+            TotalesTrayectos resumidos = resumenesDiarios.totalesEntreDias(hoy, hoy.plusDays(1));
+            TotalesTrayectos calculados = trayectos.totalesEnRangoFechas(hoy.atStartOfDay(), hoy.plusDays(1).atStartOfDay());
+
+            // -- Assert: Los resúmenes llevan los mismos totales que los trayectos
+            assertEquals(2, resumidos.getCantidad(), "No cuenta los trayectos iniciados en el día");
+            assertEquals(calculados.getCantidad(), resumidos.getCantidad(), "La cantidad no coincide con los trayectos");
+            assertEquals(calculados.getDuracionTotal(), resumidos.getDuracionTotal(), "La duración no coincide con los trayectos");
+            assertEquals(calculados.getDistanciaTotal(), resumidos.getDistanciaTotal(), 1e-9, "La distancia no coincide con los trayectos");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarResumenTrayectos_trayectoActivoEnBorde() {
+        try {
+            // -- Arrange: Un trayecto finalizado y otro activo que ya recorrió distancia
+            UUID finalizadoId = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(finalizadoId, 27.1, 42.1);
+            servicio.finalizarTrayecto(finalizadoId, 27.2, 42.2);
+
+            UUID activoId = servicio.iniciarTrayecto("otro-propietario", 28.0, 43.0);
+            servicio.registrarUbicacion(activoId, 28.1, 43.1);
+            entityManager.flush();
+            entityManager.clear();
+
+            // el rango termina hoy, así que los trayectos de hoy se leen en el borde
+            LocalDateTime inicio = LocalDate.now().minusDays(2).atTime(12, 0);
+            LocalDateTime fin = LocalDateTime.now().plusMinutes(1);
+
+            // -- Act: Totales con y sin resúmenes diarios
+            TotalesTrayectos conResumenes = servicio.totalesConResumenesDiarios(inicio, fin);
+            TotalesTrayectos sinResumenes = trayectos.totalesEnRangoFechas(inicio, fin);
+
+            // -- Assert: Los dos modos cuentan el activo sin sumar su distancia
+            double distanciaFinalizado = trayectos.findById(finalizadoId).get().getDistanciaTotal();
+            assertTrue(trayectos.findById(activoId).get().getDistanciaTotal() > 0, "El trayecto activo no acumuló distancia");
+            assertEquals(2, conResumenes.getCantidad(), "No contó el trayecto activo con resúmenes diarios");
+            assertEquals(2, sinResumenes.getCantidad(), "No contó el trayecto activo sin resúmenes diarios");
+            assertEquals(distanciaFinalizado, conResumenes.getDistanciaTotal(), 1e-9, "Sumó la distancia del trayecto activo con resúmenes diarios");
+            assertEquals(distanciaFinalizado, sinResumenes.getDistanciaTotal(), 1e-9, "Sumó la distancia del trayecto activo sin resúmenes diarios");
+            assertEquals(sinResumenes.getDuracionTotal(), conResumenes.getDuracionTotal(), "La duración depende del modo");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
     @Test
     @Transactional
     void consultarResumenTrayectos_fechaInicioMayorQueFinal() {
@@ -109,4 +218,76 @@ class Cu005_ConsultarResumenTrayectosTests {
             fail("Generó excepción y no debería: " + e.getMessage());
         }
     }
+
+    @Test
+    @Transactional
+    void consultarResumenTrayectos_enFlujo() {
+        try {
+            // -- Arrange: Crear dos trayectos finalizados
+            UUID trayecto1Id = servicio.iniciarTrayecto(27.0, 42.0);
+            servicio.registrarUbicacion(trayecto1Id, 27.1, 42.1);
+            servicio.finalizarTrayecto(trayecto1Id, 27.2, 42.2);
+
+            UUID trayecto2Id = servicio.iniciarTrayecto(28.0, 43.0);
+            servicio.finalizarTrayecto(trayecto2Id, 28.1, 43.1);
+
+            LocalDateTime inicio = LocalDateTime.now().minusDays(1);
+            LocalDateTime fin = LocalDateTime.now().plusDays(1);
+
+            // -- Act: Escribe el resumen a medida que se leen los trayectos
+            StringWriter salida = new StringWriter();
+            servicio.consultarResumenTrayectos(inicio, fin, salida);
+
+            // -- Assert: Revisa el resultado
+            String resultado = salida.toString();
+            assertTrue(resultado.contains("Total trayectos: 2"), "No muestra el total de trayectos encontrados");
+            assertTrue(resultado.contains("(27.1, 42.1)"), "No muestra las ubicaciones del primer trayecto");
+            assertTrue(resultado.contains("(28.1, 43.1)"), "No muestra las ubicaciones del segundo trayecto");
+
+            // los trayectos salen en orden de inicio
+            assertTrue(resultado.indexOf("(27.0, 42.0)") < resultado.indexOf("(28.0, 43.0)"), "No ordena los trayectos por fecha de inicio");
+
+            // los trayectos ya escritos y sus ubicaciones no quedan en la sesión
+            assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount(), "Los trayectos escritos siguen cargados en la sesión");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarResumenTrayectos_sinConsultasPorTrayecto() {
+        Statistics estadisticas = entityManager.getEntityManagerFactory()
+            .unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+
+        try {
+            // -- Arrange: Crear 100 trayectos finalizados con tres ubicaciones cada uno
+            for (int i = 0; i < 100; i++) {
+                UUID trayectoId = servicio.iniciarTrayecto(27.0, 42.0);
+                servicio.registrarUbicacion(trayectoId, 27.1, 42.1);
+                servicio.finalizarTrayecto(trayectoId, 27.2, 42.2);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            estadisticas.clear();
+
+            LocalDateTime inicio = LocalDateTime.now().minusDays(1);
+            LocalDateTime fin = LocalDateTime.now().plusDays(1);
+
+            // -- Act: Consulta el resumen de los 100 trayectos
+            String resultado = servicio.consultarResumenTrayectos(inicio, fin);
+
+            // -- Assert: El número de consultas no depende del número de trayectos
+            assertTrue(resultado.contains("Total trayectos: 100"), "No muestra el total de trayectos encontrados");
+            assertTrue(estadisticas.getPrepareStatementCount() <= 4,
+                "Usó " + estadisticas.getPrepareStatementCount() + " sentencias SQL para 100 trayectos");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.bicicletas.trayectos.logica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.Trayecto;
+import com.bicicletas.trayectos.modelo.Ubicacion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+// CU002 con el filtro de ingesta habilitado (ver FiltroUbicaciones): a 5 metros
+// o menos es duplicada, a más de 80 km/h es un salto imposible
+@SpringBootTest(properties = "trayectos.filtro.habilitado=true")
+class FiltroUbicacionesTests {
+
+    @Autowired
+    TrayectosService servicio;
+
+    @Autowired
+    TrayectosRepository trayectos;
+
+    @Autowired
+    UbicacionesRepository ubicaciones;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    MeterRegistry registro;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    @Transactional
+    void registrarUbicacion_filtraDuplicadasYSaltos() {
+        try {
+            // -- Arrange
+            UUID trayectoId = servicio.iniciarTrayecto(-74.08, 4.6);
+            double duplicadas = descartadas("duplicada");
+            double saltos = descartadas("salto_imposible");
+
+            // -- Act: a un metro de la inicial, y a 11 km en unos milisegundos
+            servicio.registrarUbicacion(trayectoId, -74.08001, 4.6);
+            servicio.registrarUbicacion(trayectoId, -74.18, 4.6);
+
+            // -- Assert: no se guardan ni cambian el trayecto
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertEquals(1, t.getNumeroUbicaciones(), "Registró una ubicación que se debía descartar");
+            assertEquals(0.0, t.getDistanciaTotal(), "Sumó la distancia de una ubicación descartada");
+            assertEquals(1, ubicaciones.count(), "Guardó una ubicación descartada");
+            assertEquals(duplicadas + 1, descartadas("duplicada"), "No contó la ubicación duplicada");
+            assertEquals(saltos + 1, descartadas("salto_imposible"), "No contó el salto imposible");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicaciones_filtraLote() {
+        try {
+            // -- Arrange: cada 10 segundos unos 33 metros (12 km/h), con una
+            // duplicada y una lectura a 11 km en medio
+            LocalDateTime inicio = LocalDateTime.now().minusMinutes(1);
+            UUID trayectoId = iniciarTrayectoEn(inicio, -74.08, 4.6);
+            List<Ubicacion> lote = List.of(
+                ubicacion(inicio.plusSeconds(10), -74.0797, 4.6),
+                ubicacion(inicio.plusSeconds(11), -74.0797, 4.6),
+                ubicacion(inicio.plusSeconds(12), -73.98, 4.6),
+                ubicacion(inicio.plusSeconds(20), -74.0794, 4.6));
+
+            // -- Act
+            int registradas = servicio.registrarUbicaciones(trayectoId, lote);
+
+            // -- Assert: la última se compara con la anterior aceptada, no con el salto
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertEquals(2, registradas, "No descartó la duplicada y el salto");
+            assertEquals(3, t.getNumeroUbicaciones(), "El número de ubicaciones incluye descartadas");
+            assertEquals(-74.0794, t.getUltimaLongitud(), "La última ubicación no es la última aceptada");
+            assertTrue(t.getDistanciaTotal() < 0.1, "Sumó la distancia del salto: " + t.getDistanciaTotal());
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    @Test
+    @Transactional
+    void registrarUbicacionesEncoladas_descartaFueraDeOrden() {
+        try {
+            // -- Arrange: un trayecto con una ubicación registrada a los 30 segundos
+            LocalDateTime inicio = LocalDateTime.now().minusMinutes(1);
+            UUID trayectoId = iniciarTrayectoEn(inicio, -74.08, 4.6);
+            servicio.registrarUbicacionesEncoladas(Map.of(trayectoId, List.of(ubicacion(inicio.plusSeconds(30), -74.0797, 4.6))));
+            double fueraDeOrden = descartadas("fuera_de_orden");
+            double saltos = descartadas("salto_imposible");
+
+            // -- Act: llega después una ubicación tomada a los 20 segundos
+            int registradas = servicio.registrarUbicacionesEncoladas(
+                Map.of(trayectoId, List.of(ubicacion(inicio.plusSeconds(20), -74.0794, 4.6)))).registradas();
+
+            // -- Assert: se descarta por estar fuera de orden, no como salto imposible
+            Trayecto t = trayectos.findById(trayectoId).get();
+            assertEquals(0, registradas, "Registró una ubicación anterior a la última");
+            assertEquals(2, t.getNumeroUbicaciones(), "Acumuló una ubicación fuera de orden");
+            assertEquals(-74.0797, t.getUltimaLongitud(), "Cambió la última ubicación");
+            assertEquals(fueraDeOrden + 1, descartadas("fuera_de_orden"), "No contó la ubicación fuera de orden");
+            assertEquals(saltos, descartadas("salto_imposible"), "La contó como salto imposible");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        }
+    }
+
+    private double descartadas(String motivo) {
+        Counter contador = registro.find("trayectos.ubicaciones.descartadas").tag("motivo", motivo).counter();
+        return contador != null ? contador.count() : 0;
+    }
+
+    // inicia un trayecto y lo lleva a una fecha y hora pasada, para registrar
+    // ubicaciones tomadas por el dispositivo después del inicio y antes de ahora
+    private UUID iniciarTrayectoEn(LocalDateTime inicio, Double longitud, Double latitud)
+        throws Exception
+    {
+        UUID trayectoId = servicio.iniciarTrayecto(longitud, latitud);
+        entityManager.flush();
+        jdbc.update("update trayecto set fecha_hora_inicio = ?, ultima_fecha_hora = ? where id = ?", inicio, inicio, trayectoId);
+        jdbc.update("update ubicacion set fecha_hora = ? where trayecto_id = ?", inicio, trayectoId);
+        entityManager.clear();
+        return trayectoId;
+    }
+
+    private Ubicacion ubicacion(LocalDateTime fechaHora, Double longitud, Double latitud) {
+        Ubicacion ubicacion = new Ubicacion();
+        ubicacion.setFechaHora(fechaHora);
+        ubicacion.setLongitud(longitud);
+        ubicacion.setLatitud(latitud);
+        return ubicacion;
+    }
+}
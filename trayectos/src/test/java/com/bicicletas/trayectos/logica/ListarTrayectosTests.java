@@ -0,0 +1,123 @@
+package com.bicicletas.trayectos.logica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.bicicletas.trayectos.modelo.PaginaTrayectos;
+import com.bicicletas.trayectos.modelo.ResumenTrayecto;
+import com.bicicletas.trayectos.modelo.Trayecto;
+
+import jakarta.transaction.Transactional;
+
+@SpringBootTest
+class ListarTrayectosTests {
+
+    @Autowired
+    TrayectosService servicio;
+
+    @Value("${trayectos.pagina.tamano-maximo}")
+    int tamanoMaximoPagina;
+
+    @Test
+    @Transactional
+    void consultarTrayectos_recorrePaginas() {
+        try {
+            // -- Arrange: 5 trayectos de distintos propietarios
+            List<UUID> creados = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                creados.add(servicio.iniciarTrayecto("bici-" + i, 27.0, 42.0));
+            }
+
+            // -- Act: recorre el listado de a 2 trayectos
+            List<UUID> leidos = new ArrayList<>();
+            int paginas = 0;
+            String cursor = null;
+            do {
+                PaginaTrayectos<?> pagina = servicio.consultarTrayectos(cursor, 2, false);
+                assertTrue(pagina.getTrayectos().size() <= 2, "La página tiene más trayectos de los pedidos");
+                for (Object trayecto : pagina.getTrayectos()) {
+                    leidos.add(((ResumenTrayecto) trayecto).getId());
+                }
+                cursor = pagina.getSiguiente();
+                paginas++;
+            } while (cursor != null && paginas < 10);
+
+            // -- Assert: cada trayecto aparece una vez y en el orden de inicio
+            assertNull(cursor, "El listado no terminó");
+            assertEquals(creados, leidos, "El listado no devolvió los trayectos en orden de inicio");
+            assertEquals(3, paginas, "Se esperaban 3 páginas");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería", e);
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectos_limitaTamano() {
+        try {
+            // -- Arrange: más trayectos que el tamaño máximo de página
+            for (int i = 0; i <= tamanoMaximoPagina; i++) {
+                servicio.iniciarTrayecto("bici-" + i, 27.0, 42.0);
+            }
+
+            // -- Act
+            PaginaTrayectos<?> pagina = servicio.consultarTrayectos(null, 10_000, false);
+
+            // -- Assert
+            assertEquals(tamanoMaximoPagina, pagina.getTrayectos().size(), "No se limitó el tamaño de la página");
+            assertTrue(pagina.getSiguiente() != null, "Falta el cursor de la página siguiente");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería", e);
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectos_conUbicaciones() {
+        try {
+            // -- Arrange
+            UUID id = servicio.iniciarTrayecto("bici-1", 27.0, 42.0);
+            servicio.registrarUbicacion(id, 27.001, 42.001);
+
+            // -- Act
+            PaginaTrayectos<?> pagina = servicio.consultarTrayectos(null, 10, true);
+
+            // -- Assert
+            assertEquals(1, pagina.getTrayectos().size(), "Se esperaba un trayecto");
+            Trayecto trayecto = (Trayecto) pagina.getTrayectos().get(0);
+            assertEquals(id, trayecto.getId(), "No es el trayecto iniciado");
+            assertEquals(2, trayecto.getUbicaciones().size(), "No se incluyeron las ubicaciones");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería", e);
+        }
+    }
+
+    @Test
+    @Transactional
+    void consultarTrayectos_cursorInvalido() {
+        try {
+            // -- Act
+            servicio.consultarTrayectos("no-es-un-cursor", 10, false);
+
+            fail("Debería haber fallado porque el cursor no es válido");
+
+        } catch (Exception e) {
+            // -- Assert
+            assertEquals("El cursor de la página no es válido", e.getMessage());
+        }
+    }
+}
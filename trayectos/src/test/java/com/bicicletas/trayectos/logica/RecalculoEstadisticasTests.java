@@ -0,0 +1,203 @@
+package com.bicicletas.trayectos.logica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.bicicletas.trayectos.dataAccess.RecalculosRepository;
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.Trayecto;
+
+// lotes de 2 trayectos en 2 hilos: 5 trayectos son 3 lotes
+@SpringBootTest(properties = {
+    "trayectos.recalculo.paralelismo=2",
+    "trayectos.recalculo.tamano-lote=2"
+})
+class RecalculoEstadisticasTests {
+
+    @Autowired
+    RecalculoEstadisticas recalculo;
+
+    @Autowired
+    RecalculosRepository recalculos;
+
+    @Autowired
+    TrayectosService servicio;
+
+    @Autowired
+    TrayectosRepository trayectos;
+
+    @Autowired
+    UbicacionesRepository ubicaciones;
+
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    CacheTrayectos cache;
+
+    @Test
+    void ejecutar_corrigeEstadisticas() {
+        try {
+            // -- Arrange: 5 trayectos finalizados, uno sin recorrido codificado, todos
+            // con las estadísticas dañadas y el resumen diario igual de dañado
+            List<UUID> ids = finalizarTrayectos(5);
+            List<Trayecto> originales = trayectos.findAllById(ids);
+            double distanciaResumen = resumenesDiarios.findAll().get(0).getDistanciaTotal();
+            jdbc.update("update trayecto set recorrido_codificado = null where id = ?", ids.get(0));
+            danarEstadisticas();
+
+            // -- Act
+            RecalculoEstadisticas.Progreso progreso = recalculo.ejecutar("prueba", false);
+
+            // -- Assert
+            assertEquals(5, progreso.procesados(), "No recalculó todos los trayectos");
+            assertNotNull(progreso.ultimoId(), "No guardó el punto de control");
+            for (Trayecto original : originales) {
+                Trayecto recalculado = trayectos.findById(original.getId()).get();
+                assertEquals(original.getNumeroUbicaciones(), recalculado.getNumeroUbicaciones(), "El número de ubicaciones no es el original");
+                assertEquals(original.getDistanciaTotal(), recalculado.getDistanciaTotal(), 1e-9, "La distancia no es la original");
+                assertEquals(original.getVelocidadPromedio(), recalculado.getVelocidadPromedio(), 1e-9, "La velocidad no es la original");
+                assertEquals(original.getUltimaLatitud(), recalculado.getUltimaLatitud(), "La última ubicación no es la original");
+                assertEquals(original.getLatitudMaxima(), recalculado.getLatitudMaxima(), "La caja no es la original");
+            }
+            assertNotNull(trayectos.findById(ids.get(0)).get().getRecorridoCodificado(), "No codificó el recorrido que faltaba");
+            assertEquals(distanciaResumen, resumenesDiarios.findAll().get(0).getDistanciaTotal(), 1e-9, "No corrigió el resumen diario");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            limpiar();
+        }
+    }
+
+    @Test
+    void ejecutar_continuaDesdePuntoControl() {
+        try {
+            // -- Arrange: un recálculo anterior se detuvo después de los dos primeros trayectos
+            List<UUID> ids = finalizarTrayectos(3);
+            // en el orden de la base de datos (bytes sin signo), no el de UUID.compareTo
+            ids.sort(Comparator.comparing(UUID::toString));
+            double distanciaUltimo = trayectos.findById(ids.get(2)).get().getDistanciaTotal();
+            danarEstadisticas();
+            recalculos.guardarPuntoControl("prueba", ids.get(1), 2);
+
+            // -- Act
+            RecalculoEstadisticas.Progreso progreso = recalculo.ejecutar("prueba", false);
+
+            // -- Assert: solo se recalcula el trayecto después del punto de control
+            assertEquals(3, progreso.procesados(), "No sumó los procesados antes del punto de control");
+            assertEquals(ids.get(2), progreso.ultimoId(), "El punto de control no es el último trayecto");
+            assertEquals(0.0, trayectos.findById(ids.get(0)).get().getDistanciaTotal(), "Recalculó un trayecto antes del punto de control");
+            assertEquals(distanciaUltimo, trayectos.findById(ids.get(2)).get().getDistanciaTotal(), 1e-9, "No recalculó el trayecto después del punto de control");
+
+            // desde el inicio se recalculan todos
+            progreso = recalculo.ejecutar("prueba", true);
+            assertEquals(3, progreso.procesados(), "No recalculó todos los trayectos desde el inicio");
+            assertTrue(trayectos.findById(ids.get(0)).get().getDistanciaTotal() > 0, "No recalculó el primer trayecto");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            limpiar();
+        }
+    }
+
+    @Test
+    void ejecutar_usaFilasConCoordenadasFueraDeLaCuadricula() {
+        try {
+            // -- Arrange: un trayecto con coordenadas que el recorrido codificado
+            // redondea a 1e-6 grados
+            UUID id = servicio.iniciarTrayecto(27.0123456789, 42.0123456789);
+            servicio.registrarUbicacion(id, 27.0234567891, 42.0345678912);
+            servicio.finalizarTrayecto(id, 27.0456789123, 42.0567891234);
+            Trayecto original = trayectos.findById(id).get();
+            double distanciaResumen = resumenesDiarios.findAll().get(0).getDistanciaTotal();
+
+            // -- Act
+            recalculo.ejecutar("prueba", true);
+
+            // -- Assert: se calcula con las filas, así que no cambia nada
+            Trayecto recalculado = trayectos.findById(id).get();
+            assertEquals(original.getUltimaLatitud(), recalculado.getUltimaLatitud(), "Usó la última ubicación redondeada");
+            assertEquals(original.getLatitudMinima(), recalculado.getLatitudMinima(), "Usó la caja redondeada");
+            assertEquals(original.getLongitudMaxima(), recalculado.getLongitudMaxima(), "Usó la caja redondeada");
+            assertEquals(original.getDistanciaTotal(), recalculado.getDistanciaTotal(), 1e-12, "Usó la distancia del recorrido redondeado");
+            assertEquals(distanciaResumen, resumenesDiarios.findAll().get(0).getDistanciaTotal(), 1e-12, "Cambió el resumen diario");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            limpiar();
+        }
+    }
+
+    @Test
+    void ejecutar_noVuelveAGuardarVistaAnteriorEnCache() {
+        try {
+            // -- Arrange: una consulta lee el trayecto con las estadísticas dañadas
+            UUID id = finalizarTrayectos(1).get(0);
+            danarEstadisticas();
+            Trayecto leido = trayectos.findById(id).get();
+
+            // -- Act: la consulta guarda su vista después de que el recálculo confirma
+            recalculo.ejecutar("prueba", true);
+            cache.guardar(leido, "vista anterior");
+
+            // -- Assert
+            assertNull(cache.consultar(id), "Guardó una vista anterior al recálculo");
+            String consultado = servicio.consultarTrayecto(id);
+            assertEquals(consultado, cache.consultar(id), "No guardó la vista recalculada");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            limpiar();
+        }
+    }
+
+    private List<UUID> finalizarTrayectos(int cantidad)
+        throws Exception
+    {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            UUID id = servicio.iniciarTrayecto(27.0 + i, 42.0);
+            servicio.registrarUbicacion(id, 27.01 + i, 42.01);
+            servicio.registrarUbicacion(id, 27.02 + i, 42.03);
+            servicio.finalizarTrayecto(id, 27.04 + i, 42.04);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private void danarEstadisticas() {
+        jdbc.update("update trayecto set distancia_total = 0, numero_ubicaciones = 0, velocidad_promedio = 0, "
+            + "ultima_latitud = 0, latitud_maxima = 0");
+        jdbc.update("update resumen_diario set distancia_total = 0");
+    }
+
+    private void limpiar() {
+        recalculos.borrarPuntoControl("prueba");
+        ubicaciones.deleteAllInBatch();
+        trayectos.deleteAllInBatch();
+        resumenesDiarios.deleteAllInBatch();
+    }
+
+}
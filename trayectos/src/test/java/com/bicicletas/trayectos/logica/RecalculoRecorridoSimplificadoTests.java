@@ -0,0 +1,77 @@
+package com.bicicletas.trayectos.logica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.bicicletas.trayectos.dataAccess.RecalculosRepository;
+import com.bicicletas.trayectos.dataAccess.ResumenesDiariosRepository;
+import com.bicicletas.trayectos.dataAccess.TrayectosRepository;
+import com.bicicletas.trayectos.dataAccess.UbicacionesRepository;
+import com.bicicletas.trayectos.modelo.Trayecto;
+
+// recorridos simplificados con 50 metros de tolerancia y sin filas de ubicacion
+@SpringBootTest(properties = {
+    "trayectos.recorrido.tolerancia-metros=50",
+    "trayectos.recorrido.conservar-ubicaciones=false"
+})
+class RecalculoRecorridoSimplificadoTests {
+
+    @Autowired
+    RecalculoEstadisticas recalculo;
+
+    @Autowired
+    RecalculosRepository recalculos;
+
+    @Autowired
+    TrayectosService servicio;
+
+    @Autowired
+    TrayectosRepository trayectos;
+
+    @Autowired
+    UbicacionesRepository ubicaciones;
+
+    @Autowired
+    ResumenesDiariosRepository resumenesDiarios;
+
+    @Test
+    void ejecutar_conservaEstadisticasDeRecorridoSimplificado() {
+        try {
+            // -- Arrange: un trayecto casi en línea recta, del que el recorrido
+            // codificado solo guarda la primera y la última ubicación
+            UUID id = servicio.iniciarTrayecto(27.00, 42.0);
+            servicio.registrarUbicacion(id, 27.01, 42.00001);
+            servicio.registrarUbicacion(id, 27.02, 42.0);
+            servicio.finalizarTrayecto(id, 27.03, 42.00001);
+            Trayecto original = trayectos.findById(id).get();
+            double distanciaResumen = resumenesDiarios.findAll().get(0).getDistanciaTotal();
+            assertTrue(original.isRecorridoSimplificado(), "No marcó el recorrido como simplificado");
+            assertEquals(0, ubicaciones.count(), "No borró las filas de ubicacion");
+
+            // -- Act
+            recalculo.ejecutar("prueba", true);
+
+            // -- Assert: no se recalcula con el recorrido simplificado
+            Trayecto recalculado = trayectos.findById(id).get();
+            assertEquals(4, recalculado.getNumeroUbicaciones(), "Recalculó con el recorrido simplificado");
+            assertEquals(original.getDistanciaTotal(), recalculado.getDistanciaTotal(), "Recalculó con el recorrido simplificado");
+            assertEquals(original.getVersion(), recalculado.getVersion(), "Actualizó el trayecto");
+            assertEquals(distanciaResumen, resumenesDiarios.findAll().get(0).getDistanciaTotal(), "Cambió el resumen diario");
+
+        } catch (Exception e) {
+            fail("Generó excepción y no debería: " + e.getMessage());
+        } finally {
+            recalculos.borrarPuntoControl("prueba");
+            trayectos.deleteAllInBatch();
+            resumenesDiarios.deleteAllInBatch();
+        }
+    }
+
+}
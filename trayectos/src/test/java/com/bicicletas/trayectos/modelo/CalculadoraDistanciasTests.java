@@ -0,0 +1,79 @@
+package com.bicicletas.trayectos.modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// sin contexto de Spring: solo cálculos sobre arreglos
+class CalculadoraDistanciasTests {
+
+    @Test
+    void haversine_igualATrayecto() {
+        // -- Arrange: un recorrido aleatorio, con tramos cortos y largos
+        Random aleatorio = new Random(7);
+        int tamano = 5_000;
+        double[] latitudes = new double[tamano];
+        double[] longitudes = new double[tamano];
+        double esperada = 0;
+        for (int i = 0; i < tamano; i++) {
+            double salto = i % 100 == 0 ? 2.0 : 0.001;
+            latitudes[i] = i == 0 ? 4.6 : Math.clamp(latitudes[i - 1] + (aleatorio.nextDouble() - 0.5) * salto, -89.0, 89.0);
+            longitudes[i] = i == 0 ? -74.08 : longitudes[i - 1] + (aleatorio.nextDouble() - 0.5) * salto;
+            if (i > 0) {
+                esperada += Trayecto.calcularDistancia(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            }
+        }
+
+        // -- Act
+        double distancia = CalculadoraDistancias.haversine(latitudes, longitudes, tamano);
+
+        // -- Assert
+        assertEquals(esperada, distancia, esperada * 1e-12, "No coincide con Trayecto.calcularDistancia");
+    }
+
+    @Test
+    void equirectangular_errorAcotadoPorTramo() {
+        // -- Arrange: tramos de hasta TRAMO_MAXIMO_GRADOS en latitudes hasta 80 grados
+        Random aleatorio = new Random(11);
+        double tramo = CalculadoraDistancias.TRAMO_MAXIMO_GRADOS;
+        double errorMaximo = 0;
+
+        // -- Act
+        for (int i = 0; i < 100_000; i++) {
+            double latitud = (aleatorio.nextDouble() * 2 - 1) * 80;
+            double longitud = (aleatorio.nextDouble() * 2 - 1) * 179;
+            double[] latitudes = { latitud, Math.clamp(latitud + (aleatorio.nextDouble() * 2 - 1) * tramo, -80.0, 80.0) };
+            double[] longitudes = { longitud, longitud + (aleatorio.nextDouble() * 2 - 1) * tramo };
+
+            double exacta = CalculadoraDistancias.haversine(latitudes, longitudes, 2);
+            double aproximada = CalculadoraDistancias.equirectangular(latitudes, longitudes, 2);
+            if (exacta > 1e-6) {
+                errorMaximo = Math.max(errorMaximo, Math.abs(aproximada - exacta) / exacta);
+            }
+        }
+
+        // -- Assert
+        assertTrue(errorMaximo < CalculadoraDistancias.ERROR_MAXIMO_EQUIRECTANGULAR, "Error relativo máximo: " + errorMaximo);
+    }
+
+    @Test
+    void equirectangular_tramosLargosConHaversine() {
+        // -- Arrange: un tramo de Bogotá a Medellín (más largo que TRAMO_MAXIMO_GRADOS)
+        double[] latitudes = { 4.6097, 6.2442 };
+        double[] longitudes = { -74.0817, -75.5812 };
+
+        // -- Act / Assert: se calcula exacto
+        assertEquals(Trayecto.calcularDistancia(latitudes[0], longitudes[0], latitudes[1], longitudes[1]),
+            CalculadoraDistancias.equirectangular(latitudes, longitudes, 2), 1e-9);
+    }
+
+    @Test
+    void distanciaTotal_menosDeDosUbicaciones() {
+        assertEquals(0.0, CalculadoraDistancias.haversine(new double[] { 4.6 }, new double[] { -74.0 }, 1));
+        assertEquals(0.0, CalculadoraDistancias.equirectangular(new double[0], new double[0], 0));
+    }
+
+}
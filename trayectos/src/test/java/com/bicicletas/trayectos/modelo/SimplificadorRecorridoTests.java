@@ -0,0 +1,88 @@
+package com.bicicletas.trayectos.modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// sin contexto de Spring: solo cálculos sobre arreglos
+class SimplificadorRecorridoTests {
+
+    @Test
+    void simplificar_lineaRectaQuedaEnExtremos() {
+        // -- Arrange: 100 ubicaciones sobre el mismo paralelo
+        Recorrido recorrido = new Recorrido();
+        for (int i = 0; i < 100; i++) {
+            recorrido.agregar(i * 1_000_000L, -74.08 + i * 0.0001, 4.6);
+        }
+
+        // -- Act
+        Recorrido simplificado = SimplificadorRecorrido.simplificar(recorrido, 1, 0.01);
+
+        // -- Assert
+        assertEquals(2, simplificado.getTamano(), "No quitó las ubicaciones intermedias");
+        assertEquals(recorrido.fechaHora(0), simplificado.fechaHora(0), "No conservó la primera ubicación");
+        assertEquals(recorrido.fechaHora(99), simplificado.fechaHora(1), "No conservó la última ubicación");
+        assertEquals(recorrido.calcularDistanciaTotal(), simplificado.calcularDistanciaTotal(), 1e-6, "Cambió la distancia");
+    }
+
+    @Test
+    void simplificar_conservaVertices() {
+        // -- Arrange: zigzag de 100 metros de amplitud
+        Recorrido recorrido = new Recorrido();
+        for (int i = 0; i < 50; i++) {
+            recorrido.agregar(i * 1_000_000L, -74.08 + i * 0.001, 4.6 + (i % 2) * 0.0009);
+        }
+
+        // -- Act
+        Recorrido simplificado = SimplificadorRecorrido.simplificar(recorrido, 5, 0.01);
+
+        // -- Assert: ningún vértice está a menos de la tolerancia
+        assertSame(recorrido, simplificado, "Quitó vértices del zigzag");
+    }
+
+    @Test
+    void simplificar_recorridoTipico() {
+        // -- Arrange: una ubicación cada 5 metros por calles rectas con giros cada
+        // 200 metros, con ruido de GPS de 20 centímetros
+        Random aleatorio = new Random(3);
+        Recorrido recorrido = new Recorrido();
+        double latitud = 4.6;
+        double longitud = -74.08;
+        double rumbo = 0;
+        double grado = 1 / 111_195.0;
+        for (int i = 0; i < 5_000; i++) {
+            if (i % 40 == 0) {
+                rumbo += (aleatorio.nextDouble() - 0.5) * Math.PI;
+            }
+            latitud += Math.cos(rumbo) * 5 * grado;
+            longitud += Math.sin(rumbo) * 5 * grado / Math.cos(Math.toRadians(latitud));
+            recorrido.agregar(i * 2_000_000L,
+                longitud + aleatorio.nextGaussian() * 0.2 * grado,
+                latitud + aleatorio.nextGaussian() * 0.2 * grado);
+        }
+
+        // -- Act
+        Recorrido simplificado = SimplificadorRecorrido.simplificar(recorrido, 3, 0.01);
+
+        // -- Assert: un orden de magnitud menos de ubicaciones, con la distancia dentro del error
+        double distancia = recorrido.calcularDistanciaTotal();
+        double error = (distancia - simplificado.calcularDistanciaTotal()) / distancia;
+        assertTrue(simplificado.getTamano() * 10 < recorrido.getTamano(), "Conservó " + simplificado.getTamano() + " ubicaciones");
+        assertTrue(error >= 0 && error <= 0.01, "Error relativo de la distancia: " + error);
+    }
+
+    @Test
+    void simplificar_sinTolerancia() {
+        Recorrido recorrido = new Recorrido();
+        for (int i = 0; i < 10; i++) {
+            recorrido.agregar(i * 1_000_000L, -74.08 + i * 0.0001, 4.6);
+        }
+
+        assertSame(recorrido, SimplificadorRecorrido.simplificar(recorrido, 0, 0.01), "Simplificó sin tolerancia");
+    }
+
+}